@@ -16,12 +16,22 @@ import java.util.Observer;
 
 public class MainActivity extends ActionBarActivity {
 
+    private GraphView graphView;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        GraphView graphView = (GraphView) findViewById(R.id.graphView);
+        graphView = (GraphView) findViewById(R.id.graphView);
+
+        GraphView.RetainedState retainedState =
+                (GraphView.RetainedState) getLastCustomNonConfigurationInstance();
+        if (retainedState != null) {
+            graphView.setRetainedState(retainedState);
+            return;
+        }
+
         graphView.addPlot(
                 new ExamplePointsProvider(),
                 new PlotStyle()
@@ -35,6 +45,11 @@ public class MainActivity extends ActionBarActivity {
         );
     }
 
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return graphView.getRetainedState();
+    }
+
     private static class ExamplePointsProvider implements PointsProvider {
 
         private final Observable observable = new PointsObservable();
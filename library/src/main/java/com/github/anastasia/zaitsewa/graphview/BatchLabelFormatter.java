@@ -0,0 +1,27 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+/**
+ * Optional interface for a {@link com.github.anastasia.zaitsewa.graphview.PointsProvider}
+ * to format all axis labels of a layout pass in one call instead of one
+ * {@link PointsProvider#getLabelX(double)} / {@link PointsProvider#getLabelY(double)} call per tick
+ */
+public interface BatchLabelFormatter {
+
+    /**
+     * Reflect value representations of X-coordinates to readable state
+     * @param values value representations (example: dates in milliseconds)
+     * @param count  number of values to format, starting from index 0
+     * @param out    array to put representations for UI to (example: DD/MM format),
+     *               out[i] must correspond to values[i]
+     */
+    void formatLabelsX(double[] values, int count, String[] out);
+
+    /**
+     * Reflect value representations of Y-coordinates to readable state
+     * @param values value representations (example: 12.3426789)
+     * @param count  number of values to format, starting from index 0
+     * @param out    array to put representations for UI to (example: 12.34),
+     *               out[i] must correspond to values[i]
+     */
+    void formatLabelsY(double[] values, int count, String[] out);
+}
@@ -0,0 +1,15 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+/**
+ * A {@link com.github.anastasia.zaitsewa.graphview.PointsProvider} backed by
+ * {@link CompressedSeries}: GraphView takes bounds from block headers and decodes
+ * the series block by block instead of reading {@link #getPoints()}.
+ * {@link #getPoints()} may simply return {@link CompressedSeries#asList()}
+ */
+public interface CompressedPointsProvider extends PointsProvider {
+
+    /**
+     * @return series with points of the plot
+     */
+    CompressedSeries getSeries();
+}
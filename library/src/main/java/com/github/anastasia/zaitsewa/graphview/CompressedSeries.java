@@ -0,0 +1,386 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only series of points stored compressed in blocks
+ * (Gorilla-style: delta-of-delta encoded X, XOR encoded Y).
+ * X-values are integral (example: date in milliseconds), Y-values are doubles.
+ * Every block starts with raw first point and min/max of its points, so blocks
+ * can be decoded independently and skipped without decoding.
+ * Not thread-safe for writing: once appends are done, the series may be decoded
+ * from several threads at once (example: by workers of GraphRenderer)
+ */
+public class CompressedSeries {
+
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+    private static final int NO_WINDOW = -1;
+    private final int blockSize;
+    private final List<Block> blocks = new ArrayList<>();
+    private int size;
+    private boolean sortedX = true;
+    private long minX = Long.MAX_VALUE;
+    private long maxX = Long.MIN_VALUE;
+    private double minY = Double.MAX_VALUE;
+    private double maxY = -Double.MAX_VALUE;
+    // Encoder state of the last block
+    private long prevX;
+    private long prevDelta;
+    private long prevYBits;
+    private int prevLeading;
+    private int prevTrailing;
+
+    public CompressedSeries() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize - number of points in a block
+     */
+    public CompressedSeries(int blockSize) {
+        if (blockSize < 2) {
+            throw new IllegalArgumentException("Block size should be at least 2, got " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Add the point to the end of the series
+     */
+    public void append(long x, double y) {
+        if (size > 0 && x < prevX) {
+            sortedX = false;
+        }
+        minX = Math.min(minX, x);
+        maxX = Math.max(maxX, x);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+
+        Block block = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+        if (block == null || block.count == blockSize) {
+            if (block != null) {
+                block.seal();
+            }
+            blocks.add(new Block(x, y));
+            prevX = x;
+            prevDelta = 0;
+            prevYBits = Double.doubleToRawLongBits(y);
+            prevLeading = NO_WINDOW;
+            prevTrailing = 0;
+            size++;
+            return;
+        }
+
+        long delta = x - prevX;
+        writeDeltaOfDelta(block, delta - prevDelta);
+        prevDelta = delta;
+        prevX = x;
+
+        long yBits = Double.doubleToRawLongBits(y);
+        writeXor(block, yBits ^ prevYBits);
+        prevYBits = yBits;
+
+        block.include(x, y);
+        size++;
+    }
+
+    private static void writeDeltaOfDelta(Block block, long dod) {
+        if (dod == 0) {
+            block.write(0, 1);
+        } else if (dod >= -64 && dod <= 63) {
+            block.write(0x2, 2);
+            block.write(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            block.write(0x6, 3);
+            block.write(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            block.write(0xE, 4);
+            block.write(dod, 12);
+        } else {
+            block.write(0xF, 4);
+            block.write(dod, 64);
+        }
+    }
+
+    private void writeXor(Block block, long xor) {
+        if (xor == 0) {
+            block.write(0, 1);
+            return;
+        }
+        int leading = Long.numberOfLeadingZeros(xor);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (prevLeading != NO_WINDOW && leading >= prevLeading && trailing >= prevTrailing) {
+            // Meaningful bits fit into the previous window
+            block.write(0x2, 2);
+            block.write(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+        } else {
+            int meaningful = 64 - leading - trailing;
+            block.write(0x3, 2);
+            block.write(leading, 6);
+            block.write(meaningful - 1, 6);
+            block.write(xor >>> trailing, meaningful);
+            prevLeading = leading;
+            prevTrailing = trailing;
+        }
+    }
+
+    /**
+     * Decode points of the block
+     *
+     * @param xs - array for X-values, at least {@link #getBlockSize(int)} long
+     * @param ys - array for Y-values, at least {@link #getBlockSize(int)} long
+     * @return number of decoded points
+     */
+    public int decodeBlock(int index, double[] xs, double[] ys) {
+        Block block = blocks.get(index);
+        BitReader reader = new BitReader(block.words);
+
+        long x = block.firstX;
+        long delta = 0;
+        long yBits = Double.doubleToRawLongBits(block.firstY);
+        int leading = 0;
+        int trailing = 0;
+        xs[0] = x;
+        ys[0] = block.firstY;
+
+        for (int i = 1; i < block.count; i++) {
+            long dod;
+            if (reader.read(1) == 0) {
+                dod = 0;
+            } else if (reader.read(1) == 0) {
+                dod = signed(reader.read(7), 7);
+            } else if (reader.read(1) == 0) {
+                dod = signed(reader.read(9), 9);
+            } else if (reader.read(1) == 0) {
+                dod = signed(reader.read(12), 12);
+            } else {
+                dod = reader.read(64);
+            }
+            delta += dod;
+            x += delta;
+            xs[i] = x;
+
+            if (reader.read(1) != 0) {
+                if (reader.read(1) != 0) {
+                    leading = (int) reader.read(6);
+                    trailing = 64 - leading - ((int) reader.read(6) + 1);
+                }
+                yBits ^= reader.read(64 - leading - trailing) << trailing;
+            }
+            ys[i] = Double.longBitsToDouble(yBits);
+        }
+        return block.count;
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    /**
+     * @return number of points in the series
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if every point was appended with X not less than the previous one
+     */
+    public boolean isSortedX() {
+        return sortedX;
+    }
+
+    public long getMinX() {
+        return minX;
+    }
+
+    public long getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * @return maximum number of points in a block
+     */
+    public int getBlockCapacity() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * @return number of points in the block
+     */
+    public int getBlockSize(int index) {
+        return blocks.get(index).count;
+    }
+
+    /**
+     * @return X of the first point of the block, available without decoding
+     */
+    public long getBlockFirstX(int index) {
+        return blocks.get(index).firstX;
+    }
+
+    /**
+     * @return Y of the first point of the block, available without decoding
+     */
+    public double getBlockFirstY(int index) {
+        return blocks.get(index).firstY;
+    }
+
+    public long getBlockMinX(int index) {
+        return blocks.get(index).minX;
+    }
+
+    public long getBlockMaxX(int index) {
+        return blocks.get(index).maxX;
+    }
+
+    public double getBlockMinY(int index) {
+        return blocks.get(index).minY;
+    }
+
+    public double getBlockMaxY(int index) {
+        return blocks.get(index).maxY;
+    }
+
+    /**
+     * @return number of bytes taken by encoded points, without block headers
+     */
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for (Block block : blocks) {
+            bytes += (block.bitLength + 7) / 8;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return read-only view of the series as a List of
+     * {@link com.github.anastasia.zaitsewa.graphview.Point}; points are decoded on access,
+     * so iterating in order is cheap, while random access decodes a block per call
+     */
+    public List<Point> asList() {
+        return new AbstractList<Point>() {
+            private final double[] xs = new double[blockSize];
+            private final double[] ys = new double[blockSize];
+            private int decodedBlock = -1;
+            private int decodedCount;
+
+            @Override
+            public Point get(int location) {
+                if (location < 0 || location >= size) {
+                    throw new IndexOutOfBoundsException(
+                            "Index " + location + ", size " + size
+                    );
+                }
+                int block = location / blockSize;
+                if (block != decodedBlock || decodedCount != blocks.get(block).count) {
+                    decodedCount = decodeBlock(block, xs, ys);
+                    decodedBlock = block;
+                }
+                int i = location % blockSize;
+                return new Point(xs[i], ys[i]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static class Block {
+        final long firstX;
+        final double firstY;
+        int count = 1;
+        long minX;
+        long maxX;
+        double minY;
+        double maxY;
+        long[] words = new long[4];
+        int bitLength;
+
+        Block(long x, double y) {
+            firstX = x;
+            firstY = y;
+            minX = x;
+            maxX = x;
+            minY = y;
+            maxY = y;
+        }
+
+        void include(long x, double y) {
+            count++;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+
+        /**
+         * Write the lowest bits of value, most significant first
+         */
+        void write(long value, int bits) {
+            if (bits < 64) {
+                value &= (1L << bits) - 1;
+            }
+            int index = bitLength >>> 6;
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            int free = 64 - (bitLength & 63);
+            if (bits <= free) {
+                words[index] |= value << (free - bits);
+            } else {
+                int spill = bits - free;
+                words[index] |= value >>> spill;
+                words[index + 1] |= value << (64 - spill);
+            }
+            bitLength += bits;
+        }
+
+        /**
+         * Drop unused capacity once the block is full
+         */
+        void seal() {
+            words = Arrays.copyOf(words, (bitLength + 63) >>> 6);
+        }
+    }
+
+    private static class BitReader {
+        final long[] words;
+        int position;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        long read(int bits) {
+            int index = position >>> 6;
+            int free = 64 - (position & 63);
+            long result;
+            if (bits <= free) {
+                result = words[index] >>> (free - bits);
+            } else {
+                int spill = bits - free;
+                result = (words[index] << spill) | (words[index + 1] >>> (64 - spill));
+            }
+            position += bits;
+            return bits == 64 ? result : result & ((1L << bits) - 1);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link com.github.anastasia.zaitsewa.graphview.PointsProvider} for points produced
+ * on a background thread. One producer thread appends points without locks; readers
+ * get a consistent snapshot of the last points without copying them.
+ * Observers are notified on the main thread, not more often than once per notify interval.
+ * <p/>
+ * Points are kept in fixed-size chunks that are never modified after they are published,
+ * so a snapshot stays valid while the producer keeps appending. When the number of points
+ * exceeds the capacity, the oldest chunks are dropped (and freed once no snapshot uses them)
+ */
+public abstract class ConcurrentPointsProvider implements PointsProvider {
+
+    public static final long DEFAULT_NOTIFY_INTERVAL_MS = 16;
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private final int capacity;
+    private final int maxChunks;
+    private final long notifyIntervalMs;
+    private final Observable observable = new PointsObservable();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean notifyScheduled = new AtomicBoolean();
+    private final Runnable notifyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            notifyScheduled.set(false);
+            lastNotifyTime = SystemClock.uptimeMillis();
+            observable.notifyObservers();
+        }
+    };
+    // Published by the producer: state before the count, read by readers in reverse order
+    private volatile State state;
+    private volatile long published;
+    private volatile long lastNotifyTime;
+    // Producer-only
+    private long written;
+
+    /**
+     * @param capacity - maximum number of the last points to keep
+     */
+    public ConcurrentPointsProvider(int capacity) {
+        this(capacity, DEFAULT_NOTIFY_INTERVAL_MS);
+    }
+
+    /**
+     * @param capacity         - maximum number of the last points to keep
+     * @param notifyIntervalMs - minimum interval between notifications of observers
+     */
+    public ConcurrentPointsProvider(int capacity, long notifyIntervalMs) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxChunks = (capacity + CHUNK_SIZE - 1) / CHUNK_SIZE + 1;
+        this.notifyIntervalMs = notifyIntervalMs;
+        this.state = new State(new double[0][], new double[0][], 0, 0);
+    }
+
+    /**
+     * Add the point to the end; must be called from the producer thread only
+     */
+    public void append(double x, double y) {
+        write(x, y);
+        published = written;
+        scheduleNotify();
+    }
+
+    /**
+     * Add points to the end, publishing them at once; must be called from the producer
+     * thread only
+     *
+     * @param count - number of points to take from the start of the arrays
+     */
+    public void append(double[] xs, double[] ys, int count) {
+        for (int i = 0; i < count; i++) {
+            write(xs[i], ys[i]);
+        }
+        published = written;
+        scheduleNotify();
+    }
+
+    /**
+     * Remove all points; must be called from the producer thread only
+     */
+    public void clear() {
+        State current = state;
+        state = new State(current.xChunks, current.yChunks, current.firstSeq, written);
+        scheduleNotify();
+    }
+
+    private void write(double x, double y) {
+        long seq = written;
+        int offset = (int) (seq & CHUNK_MASK);
+        if (offset == 0) {
+            addChunk(seq);
+        }
+        State current = state;
+        current.xChunks[current.xChunks.length - 1][offset] = x;
+        current.yChunks[current.yChunks.length - 1][offset] = y;
+        written = seq + 1;
+    }
+
+    /**
+     * Publish a new directory of chunks with an empty chunk for the sequence number,
+     * dropping the oldest chunks beyond the capacity
+     */
+    private void addChunk(long seq) {
+        State current = state;
+        int keep = Math.min(current.xChunks.length, maxChunks - 1);
+        int drop = current.xChunks.length - keep;
+
+        double[][] xChunks = Arrays.copyOfRange(current.xChunks, drop, drop + keep + 1);
+        double[][] yChunks = Arrays.copyOfRange(current.yChunks, drop, drop + keep + 1);
+        xChunks[keep] = new double[CHUNK_SIZE];
+        yChunks[keep] = new double[CHUNK_SIZE];
+
+        long firstSeq = keep == 0 ? seq : current.firstSeq + ((long) drop << CHUNK_SHIFT);
+        state = new State(xChunks, yChunks, firstSeq, current.startSeq);
+    }
+
+    private void scheduleNotify() {
+        if (notifyScheduled.compareAndSet(false, true)) {
+            long delay = lastNotifyTime + notifyIntervalMs - SystemClock.uptimeMillis();
+            mainHandler.postDelayed(notifyRunnable, Math.max(0, delay));
+        }
+    }
+
+    /**
+     * @return consistent snapshot of the last points; can be called from any thread
+     */
+    @Override
+    public Snapshot getPoints() {
+        while (true) {
+            long end = published;
+            State current = state;
+            long start = Math.max(current.startSeq, Math.max(0, end - capacity));
+            // Chunks with points of this count could be dropped meanwhile by the producer
+            // appending several points at once: read the count again, as it is published
+            // right after the append
+            if (current.firstSeq <= start || start >= end) {
+                return new Snapshot(current, start, (int) Math.max(0, end - start));
+            }
+        }
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+        observable.addObserver(observer);
+        observable.notifyObservers();
+    }
+
+    /**
+     * Immutable directory of chunks; chunk i holds points with sequence numbers
+     * from firstSeq + i * CHUNK_SIZE
+     */
+    private static class State {
+        final double[][] xChunks;
+        final double[][] yChunks;
+        final long firstSeq;
+        final long startSeq;
+
+        State(double[][] xChunks, double[][] yChunks, long firstSeq, long startSeq) {
+            this.xChunks = xChunks;
+            this.yChunks = yChunks;
+            this.firstSeq = firstSeq;
+            this.startSeq = startSeq;
+        }
+    }
+
+    /**
+     * Read-only view of points published at the moment of
+     * {@link ConcurrentPointsProvider#getPoints()}; primitive getters avoid creating Points
+     */
+    public static class Snapshot extends AbstractList<Point> implements RandomAccess {
+        private final State state;
+        private final long start;
+        private final int size;
+
+        Snapshot(State state, long start, int size) {
+            this.state = state;
+            this.start = start;
+            this.size = size;
+        }
+
+        public double getX(int location) {
+            long seq = start + location;
+            return state.xChunks[chunk(seq)][(int) (seq & CHUNK_MASK)];
+        }
+
+        public double getY(int location) {
+            long seq = start + location;
+            return state.yChunks[chunk(seq)][(int) (seq & CHUNK_MASK)];
+        }
+
+        private int chunk(long seq) {
+            return (int) ((seq - state.firstSeq) >> CHUNK_SHIFT);
+        }
+
+        @Override
+        public Point get(int location) {
+            if (location < 0 || location >= size) {
+                throw new IndexOutOfBoundsException("Index " + location + ", size " + size);
+            }
+            return new Point(getX(location), getY(location));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private class PointsObservable extends Observable {
+
+        @Override
+        public void notifyObservers() {
+            setChanged();
+            super.notifyObservers();
+        }
+    }
+}
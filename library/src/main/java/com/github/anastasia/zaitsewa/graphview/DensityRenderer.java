@@ -0,0 +1,389 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Bins projected points into a per-pixel histogram and colour-maps it into a Bitmap.
+ * The histogram and the other scratch arrays belong to the renderer, which is shared
+ * by all density plots of a view; every plot keeps only its Bitmap.
+ * <p/>
+ * Binning runs in parallel without any worker scanning all points: every worker
+ * buckets its share of points by band of rows, then every worker counts the points
+ * of its own band, so workers share one histogram without locks or merging
+ */
+class DensityRenderer {
+
+    private static final int MAX_THREADS = 4;
+    private static final int THREADS = Math.max(1, Math.min(
+            MAX_THREADS, Runtime.getRuntime().availableProcessors()
+    ));
+    private static final int PARALLEL_MIN_POINTS = 50000;
+    private static final int PALETTE_SIZE = 256;
+    private static final int MIN_ALPHA = 48;
+    private static final int MAX_LEVELS_TABLE = 1 << 16;
+    private static final int NO_PIXEL = -1;
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(
+            THREADS,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DensityRenderer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+    );
+    private final List<Worker> workers = new ArrayList<>();
+    private final List<Future<Void>> futures = new ArrayList<>();
+    private final int[] palette = new int[PALETTE_SIZE];
+    private final int maxThreads;
+    private final int[] bandStarts;
+    // Points of every band found by every worker, then offsets of its points in bucketed
+    private final int[][] bandOffsets;
+    private int[] histogram = new int[0];
+    private int[] pixels = new int[0];
+    private int[] levels = new int[0];
+    private int[] rowBands = new int[0];
+    private int[] pointPixels = new int[0];
+    private int[] bucketed = new int[0];
+    private int levelsSize;
+    private int width;
+    private int height;
+    private int threads;
+    private float[] pointsPX;
+    private int pointsCount;
+    private int maxCount;
+
+    DensityRenderer() {
+        this(THREADS);
+    }
+
+    /**
+     * @param maxThreads - number of workers binning many points
+     */
+    DensityRenderer(int maxThreads) {
+        this.maxThreads = maxThreads;
+        bandStarts = new int[maxThreads + 1];
+        bandOffsets = new int[maxThreads][maxThreads];
+        for (int i = 0; i < maxThreads; i++) {
+            workers.add(new Worker(i));
+        }
+    }
+
+    /**
+     * @param pointsPX    - projected (x, y) pairs
+     * @param pointsCount - number of points
+     * @param color       - color of the densest pixels; sparser pixels are more transparent
+     * @param bitmap      - Bitmap of the previous render of the plot to reuse, can be null
+     * @return Bitmap of the given size with the density of points, or the given bitmap
+     * unchanged if the thread was interrupted while binning in parallel
+     */
+    Bitmap render(float[] pointsPX, int pointsCount, int width, int height, int color,
+                  Bitmap bitmap) {
+        if (histogram.length < width * height) {
+            histogram = new int[width * height];
+            pixels = new int[width * height];
+        }
+        this.width = width;
+        this.height = height;
+        this.pointsPX = pointsPX;
+        this.pointsCount = pointsCount;
+        int minAlpha = Math.min(MIN_ALPHA, Color.alpha(color));
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            int alpha = minAlpha + (Color.alpha(color) - minAlpha) * i / (PALETTE_SIZE - 1);
+            palette[i] = (alpha << 24) | (color & 0xFFFFFF);
+        }
+
+        threads = pointsCount < PARALLEL_MIN_POINTS ? 1 : maxThreads;
+        boolean rendered;
+        try {
+            if (threads == 1) {
+                workers.get(0).binAll();
+                maxCount = workers.get(0).maxCount;
+                rendered = true;
+            } else {
+                rendered = binInBands();
+            }
+            if (rendered) {
+                changeLevels();
+                rendered = run(Worker.COLOUR);
+            }
+        } finally {
+            this.pointsPX = null;
+        }
+        if (!rendered) {
+            // Keep the previous render instead of a partly binned histogram
+            return bitmap;
+        }
+
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return bitmap;
+    }
+
+    /**
+     * @return false if the thread was interrupted
+     */
+    private boolean binInBands() {
+        if (rowBands.length < height) {
+            rowBands = new int[height];
+        }
+        for (int band = 0; band < threads; band++) {
+            Arrays.fill(rowBands, height * band / threads, height * (band + 1) / threads, band);
+        }
+        if (pointPixels.length < pointsCount) {
+            pointPixels = new int[pointsCount];
+            bucketed = new int[pointsCount];
+        }
+
+        if (!run(Worker.INDEX)) {
+            return false;
+        }
+        int offset = 0;
+        for (int band = 0; band < threads; band++) {
+            bandStarts[band] = offset;
+            for (int worker = 0; worker < threads; worker++) {
+                int count = bandOffsets[worker][band];
+                bandOffsets[worker][band] = offset;
+                offset += count;
+            }
+        }
+        bandStarts[threads] = offset;
+        if (!run(Worker.BUCKET) || !run(Worker.COUNT)) {
+            return false;
+        }
+
+        maxCount = 0;
+        for (int i = 0; i < threads; i++) {
+            maxCount = Math.max(maxCount, workers.get(i).maxCount);
+        }
+        return true;
+    }
+
+    /**
+     * @return colour of the pixel in the last render
+     */
+    int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    /**
+     * Palette index for counts up to the table size, on logarithmic scale
+     */
+    private void changeLevels() {
+        levelsSize = Math.min(maxCount, MAX_LEVELS_TABLE) + 1;
+        if (levels.length < levelsSize) {
+            levels = new int[levelsSize];
+        }
+        for (int count = 1; count < levelsSize; count++) {
+            levels[count] = level(count);
+        }
+    }
+
+    private int level(int count) {
+        if (maxCount <= 1) {
+            return PALETTE_SIZE - 1;
+        }
+        return (int) ((PALETTE_SIZE - 1) * Math.log(count) / Math.log(maxCount));
+    }
+
+    /**
+     * Run the phase on all workers and wait for them; workers are waited for
+     * even if the thread is interrupted, so none of them is left writing the scratch
+     *
+     * @return false if the thread was interrupted
+     */
+    private boolean run(int phase) {
+        for (int i = 0; i < threads; i++) {
+            workers.get(i).phase = phase;
+        }
+        if (threads == 1) {
+            workers.get(0).call();
+            return true;
+        }
+        boolean interrupted = Thread.interrupted();
+        for (int i = 0; i < threads; i++) {
+            futures.add(EXECUTOR.submit(workers.get(i)));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Density binning failed", e.getCause());
+        } finally {
+            futures.clear();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return !interrupted;
+    }
+
+    /**
+     * Works on the index-th share of points and the index-th band of rows
+     */
+    private class Worker implements Callable<Void> {
+        static final int INDEX = 0;
+        static final int BUCKET = 1;
+        static final int COUNT = 2;
+        static final int COLOUR = 3;
+        final int index;
+        int phase;
+        int maxCount;
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public Void call() {
+            switch (phase) {
+                case INDEX:
+                    index();
+                    break;
+                case BUCKET:
+                    bucket();
+                    break;
+                case COUNT:
+                    count();
+                    break;
+                default:
+                    colour();
+                    break;
+            }
+            return null;
+        }
+
+        /**
+         * Count all points in the histogram on the calling thread
+         */
+        void binAll() {
+            int[] histogram = DensityRenderer.this.histogram;
+            float[] pointsPX = DensityRenderer.this.pointsPX;
+            Arrays.fill(histogram, 0, width * height, 0);
+
+            int max = 0;
+            for (int i = 0; i < pointsCount * 2; i += 2) {
+                int x = (int) pointsPX[i];
+                int y = (int) pointsPX[i + 1];
+                if (x >= 0 && x < width && y >= 0 && y < height) {
+                    int count = ++histogram[y * width + x];
+                    if (max < count) {
+                        max = count;
+                    }
+                }
+            }
+            maxCount = max;
+        }
+
+        /**
+         * Find the pixel of every point of the share and count points per band
+         */
+        private void index() {
+            float[] pointsPX = DensityRenderer.this.pointsPX;
+            int[] pointPixels = DensityRenderer.this.pointPixels;
+            int[] rowBands = DensityRenderer.this.rowBands;
+            int[] bandCounts = bandOffsets[index];
+            Arrays.fill(bandCounts, 0);
+
+            for (int i = pointFrom(); i < pointTo(); i++) {
+                int x = (int) pointsPX[i * 2];
+                int y = (int) pointsPX[i * 2 + 1];
+                if (x >= 0 && x < width && y >= 0 && y < height) {
+                    pointPixels[i] = y * width + x;
+                    bandCounts[rowBands[y]]++;
+                } else {
+                    pointPixels[i] = NO_PIXEL;
+                }
+            }
+        }
+
+        /**
+         * Put pixels of points of the share to the ranges of their bands
+         */
+        private void bucket() {
+            int[] pointPixels = DensityRenderer.this.pointPixels;
+            int[] bucketed = DensityRenderer.this.bucketed;
+            int[] rowBands = DensityRenderer.this.rowBands;
+            int[] offsets = bandOffsets[index];
+
+            for (int i = pointFrom(); i < pointTo(); i++) {
+                int pixel = pointPixels[i];
+                if (pixel != NO_PIXEL) {
+                    bucketed[offsets[rowBands[pixel / width]]++] = pixel;
+                }
+            }
+        }
+
+        /**
+         * Count points of the band in its rows of the histogram
+         */
+        private void count() {
+            int[] histogram = DensityRenderer.this.histogram;
+            int[] bucketed = DensityRenderer.this.bucketed;
+            Arrays.fill(histogram, rowFrom() * width, rowTo() * width, 0);
+
+            int max = 0;
+            for (int i = bandStarts[index]; i < bandStarts[index + 1]; i++) {
+                int count = ++histogram[bucketed[i]];
+                if (max < count) {
+                    max = count;
+                }
+            }
+            maxCount = max;
+        }
+
+        private void colour() {
+            int[] histogram = DensityRenderer.this.histogram;
+            int[] pixels = DensityRenderer.this.pixels;
+            int[] levels = DensityRenderer.this.levels;
+            for (int i = rowFrom() * width; i < rowTo() * width; i++) {
+                int count = histogram[i];
+                if (count == 0) {
+                    pixels[i] = Color.TRANSPARENT;
+                } else if (count < levelsSize) {
+                    pixels[i] = palette[levels[count]];
+                } else {
+                    pixels[i] = palette[level(count)];
+                }
+            }
+        }
+
+        private int pointFrom() {
+            return (int) ((long) pointsCount * index / threads);
+        }
+
+        private int pointTo() {
+            return (int) ((long) pointsCount * (index + 1) / threads);
+        }
+
+        private int rowFrom() {
+            return height * index / threads;
+        }
+
+        private int rowTo() {
+            return height * (index + 1) / threads;
+        }
+    }
+}
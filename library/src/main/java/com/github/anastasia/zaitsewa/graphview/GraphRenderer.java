@@ -0,0 +1,221 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.View;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders charts offscreen to a {@link android.graphics.Bitmap} or an image stream
+ * on worker threads, using the same drawing code as {@link GraphView}.
+ * Each worker thread keeps its own GraphView, Canvas and Paints, which are reused
+ * from chart to chart. Providers are only read, but a point Drawable of a
+ * {@link PlotStyle} is moved to every point while drawing: charts rendered at the same
+ * time must not share styles with point Drawables
+ */
+public class GraphRenderer {
+
+    private static final int DEFAULT_BACKGROUND_COLOR = Color.WHITE;
+    private final Context context;
+    private final int styleRes;
+    private final ExecutorService executor;
+    private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+        @Override
+        protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    /**
+     * @param context  - context to resolve resources and theme with
+     * @param styleRes - style resource with GraphView attributes (graphView_textColor, ...),
+     *                 or 0 to use defaults
+     */
+    public GraphRenderer(Context context, int styleRes) {
+        this(context, styleRes, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param context  - context to resolve resources and theme with
+     * @param styleRes - style resource with GraphView attributes (graphView_textColor, ...),
+     *                 or 0 to use defaults
+     * @param threads  - number of worker threads
+     */
+    public GraphRenderer(Context context, int styleRes, int threads) {
+        this.context = context.getApplicationContext();
+        this.styleRes = styleRes;
+        this.executor = Executors.newFixedThreadPool(threads, new RendererThreadFactory());
+    }
+
+    /**
+     * Render chart on a worker thread
+     *
+     * @return Future of a new Bitmap with the chart
+     */
+    public Future<Bitmap> submit(final Chart chart) {
+        return executor.submit(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() {
+                return render(chart);
+            }
+        });
+    }
+
+    /**
+     * Render chart on a worker thread and compress it to the stream
+     *
+     * @param format  - PNG, WEBP or JPEG
+     * @param quality - compression quality, 0..100
+     * @return Future that completes when the image is written; the stream is not closed
+     */
+    public Future<Void> submit(final Chart chart, final OutputStream out,
+                               final Bitmap.CompressFormat format, final int quality) {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                render(chart, out, format, quality);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Render chart on the calling thread
+     *
+     * @return new Bitmap with the chart
+     */
+    public Bitmap render(Chart chart) {
+        Bitmap bitmap = Bitmap.createBitmap(chart.width, chart.height, Bitmap.Config.ARGB_8888);
+        workers.get().draw(chart, bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Render chart on the calling thread and compress it to the stream;
+     * the stream is not closed
+     *
+     * @param format  - PNG, WEBP or JPEG
+     * @param quality - compression quality, 0..100
+     */
+    public void render(Chart chart, OutputStream out, Bitmap.CompressFormat format, int quality)
+            throws IOException {
+        Worker worker = workers.get();
+        Bitmap bitmap = worker.obtainBitmap(chart.width, chart.height);
+        worker.draw(chart, bitmap);
+        if (!bitmap.compress(format, quality, out)) {
+            throw new IOException("Failed to compress chart to " + format);
+        }
+    }
+
+    /**
+     * Stop worker threads once already submitted charts are rendered
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Description of a chart to render: plots, size and background
+     */
+    public static class Chart {
+        private final List<PointsProvider> providers = new ArrayList<>();
+        private final List<PlotStyle> styles = new ArrayList<>();
+        private final int width;
+        private final int height;
+        private int backgroundColor = DEFAULT_BACKGROUND_COLOR;
+
+        /**
+         * @param width  - width of the image in pixels
+         * @param height - height of the image in pixels
+         */
+        public Chart(int width, int height) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException(
+                        "Chart size should be positive, got " + width + "x" + height
+                );
+            }
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * @param plotStyle - style of the plot; a style with a point Drawable must not be
+         *                  used by another chart rendered at the same time
+         */
+        public Chart addPlot(PointsProvider pointsProvider, PlotStyle plotStyle) {
+            providers.add(pointsProvider);
+            styles.add(plotStyle);
+            return this;
+        }
+
+        /**
+         * @param backgroundColor - the color image is filled with before drawing
+         */
+        public Chart setBackgroundColor(int backgroundColor) {
+            this.backgroundColor = backgroundColor;
+            return this;
+        }
+    }
+
+    /**
+     * Per-thread GraphView, Canvas and scratch Bitmap
+     */
+    private class Worker {
+        final GraphView graphView = new GraphView(context, null, 0, styleRes);
+        final Canvas canvas = new Canvas();
+        Bitmap scratch;
+
+        Bitmap obtainBitmap(int width, int height) {
+            if (scratch == null || scratch.getWidth() != width || scratch.getHeight() != height) {
+                scratch = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            }
+            return scratch;
+        }
+
+        void draw(Chart chart, Bitmap bitmap) {
+            if (chart.providers.isEmpty()) {
+                throw new IllegalArgumentException("Chart should contain at least one plot");
+            }
+            graphView.setPlots(chart.providers, chart.styles);
+            boolean resized = graphView.getWidth() != chart.width
+                    || graphView.getHeight() != chart.height;
+            graphView.measure(
+                    View.MeasureSpec.makeMeasureSpec(chart.width, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(chart.height, View.MeasureSpec.EXACTLY)
+            );
+            graphView.layout(0, 0, chart.width, chart.height);
+            if (!resized) {
+                // Otherwise the chart is projected once, by the layout at its size
+                graphView.update(null, null);
+            }
+
+            canvas.setBitmap(bitmap);
+            canvas.drawColor(chart.backgroundColor);
+            graphView.draw(canvas);
+            canvas.setBitmap(null);
+        }
+    }
+
+    private static class RendererThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "GraphRenderer-" + count.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
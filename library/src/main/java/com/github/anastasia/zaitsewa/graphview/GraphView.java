@@ -2,23 +2,30 @@ package com.github.anastasia.zaitsewa.graphview;
 
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.LruCache;
 import android.util.Pair;
 import android.util.TypedValue;
 import android.view.View;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.RandomAccess;
 import java.util.TreeSet;
 
 /**
@@ -36,8 +43,30 @@ public class GraphView extends View implements Observer {
     private static final int DEFAULT_TEXT_COLOR = Color.DKGRAY;
     private static final int DEFAULT_LEVEL_COLOR = 0x44888888;
     private static final int DEFAULT_AXIS_COLOR = Color.BLACK;
-    private final List<Pair<Float, String>> labelsX = new ArrayList<Pair<Float, String>>();
-    private final List<Pair<Float, String>> labelsY = new ArrayList<Pair<Float, String>>();
+    private static final int LABEL_CACHE_SIZE = 256;
+    private static final float AUTO_BAR_WIDTH_RATIO = 0.8f;
+    private static final int COARSE_POINTS_PER_PX = 2;
+    private static final int COARSE_MIN_POINTS = 512;
+    private static final int REFINE_FACTOR = 4;
+    private static final long REFINE_BUDGET_MS = 8;
+    private static final int SLICE_POINTS = 1024;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private RetainedState state = new RetainedState();
+    private List<Pair<Float, String>> labelsX = state.labelsX;
+    private List<Pair<Float, String>> labelsY = state.labelsY;
+    private final LruCache<LabelKey, String> labelCacheX = new LruCache<>(LABEL_CACHE_SIZE);
+    private final LruCache<LabelKey, String> labelCacheY = new LruCache<>(LABEL_CACHE_SIZE);
+    private final LabelKey labelKeyProbe = new LabelKey();
+    private final PlotBounds plotBounds = new PlotBounds();
+    private PointsProvider labelCacheProviderX;
+    private PointsProvider labelCacheProviderY;
+    private double[] tickValues = new double[16];
+    private String[] tickLabels = new String[16];
+    private int[] tickMisses = new int[16];
+    private double[] blockXs = new double[0];
+    private double[] blockYs = new double[0];
+    private double[] missValues = new double[16];
+    private String[] missLabels = new String[16];
     private int textColor;
     private int levelColor;
     private int axisColor;
@@ -51,24 +80,52 @@ public class GraphView extends View implements Observer {
     private Paint textPaint;
     private Paint levelPaint;
     private Paint axisPaint;
+    private final Paint barPaint = new Paint();
+    private final Rect clipBounds = new Rect();
+    private final DensityRenderer densityRenderer = new DensityRenderer();
+    private boolean geometryValid;
+    private boolean progressiveRendering;
+    private boolean interacting;
+    private boolean refineScheduled;
+    private final MessageQueue.IdleHandler refineHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            return refine(REFINE_BUDGET_MS);
+        }
+    };
+    private float dirtyLeft;
+    private float dirtyTop;
+    private float dirtyRight;
+    private float dirtyBottom;
     private int width;
     private int height;
-    private List<Plot> plots = new ArrayList<Plot>();
+    private List<Plot> plots = state.plots;
     private float pxProY;
     private float pxProX;
     private double maxY;
     private double maxX;
     private double minX;
+    private boolean viewportXFixed;
+    private double viewportMinX;
+    private double viewportMaxX;
     private float textHeight = 0f;
     private float defaultAxisLabelMarginPX;
     private float marginPX;
 
     public GraphView(Context context, AttributeSet attrs) {
-        super(context, attrs);
+        this(context, attrs, 0, 0);
+    }
+
+    /**
+     * Constructor for offscreen rendering, where attributes come from a style resource
+     * instead of a layout
+     */
+    GraphView(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr);
         TypedArray a = context.getTheme().obtainStyledAttributes(
                 attrs,
                 R.styleable.GraphView,
-                0, 0);
+                defStyleAttr, defStyleRes);
         try {
             enableXAxis = a.getBoolean(R.styleable.GraphView_graphView_enableXAxis, true);
             enableYAxis = a.getBoolean(R.styleable.GraphView_graphView_enableYAxis, true);
@@ -149,6 +206,8 @@ public class GraphView extends View implements Observer {
     }
 
     private void init() {
+        state.view = this;
+
         levelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         levelPaint.setStyle(Paint.Style.STROKE);
         levelPaint.setColor(levelColor);
@@ -176,6 +235,9 @@ public class GraphView extends View implements Observer {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        if (!canvas.getClipBounds(clipBounds)) {
+            return;
+        }
         drawXAxis(canvas);
         drawYAxisWithLevels(canvas);
         drawPlots(canvas);
@@ -186,18 +248,50 @@ public class GraphView extends View implements Observer {
             return;
         }
 
+        int saveCount = canvas.save();
+        if (viewportXFixed) {
+            canvas.clipRect(labelPlacePX, 0, width, height - labelPlacePX);
+        }
+
         for (Plot plot : plots) {
-            if (plot.style.isFillEnabled()) {
-                canvas.drawPath(plot.fillPath, plot.style.getFillPaint());
+            switch (plot.style.getType()) {
+                case SCATTER:
+                    canvas.drawPoints(
+                            plot.pointsPX, 0, plot.pointsCount * 2,
+                            plot.style.getPointPaint()
+                    );
+                    break;
+                case DENSITY:
+                    if (plot.densityBitmap != null && plot.pointsCount > 0) {
+                        canvas.drawBitmap(plot.densityBitmap, 0, 0, null);
+                    }
+                    break;
+                case BAR:
+                    barPaint.set(plot.style.getBarPaint());
+                    barPaint.setStrokeWidth(plot.barWidthPX);
+                    canvas.drawLines(plot.barsPX, 0, plot.pointsCount * 4, barPaint);
+                    break;
+                default:
+                    if (plot.style.isFillEnabled()) {
+                        canvas.drawPath(plot.fillPath, plot.style.getFillPaint());
+                    }
+                    canvas.drawPath(plot.path, plot.style.getLinePaint());
+                    break;
             }
 
-            canvas.drawPath(plot.path, plot.style.getLinePaint());
-
             Drawable pointDrawable = plot.style.getPointDrawable();
             if (pointDrawable != null) {
-                for (Pair<Float, Float> point : plot.pointsPX) {
-                    float x = point.first;
-                    float y = point.second;
+                float[] pointsPX = plot.pointsPX;
+                float halfWidth = pointDrawable.getIntrinsicWidth() / 2;
+                float halfHeight = pointDrawable.getIntrinsicHeight() / 2;
+                for (int i = 0; i < plot.pointsCount * 2; i += 2) {
+                    float x = pointsPX[i];
+                    float y = pointsPX[i + 1];
+                    if (x + halfWidth < clipBounds.left || x - halfWidth > clipBounds.right
+                            || y + halfHeight < clipBounds.top
+                            || y - halfHeight > clipBounds.bottom) {
+                        continue;
+                    }
 
                     pointDrawable.setBounds(
                             (int) (x - pointDrawable.getIntrinsicWidth() / 2),
@@ -209,6 +303,7 @@ public class GraphView extends View implements Observer {
                 }
             }
         }
+        canvas.restoreToCount(saveCount);
     }
 
     private void drawYAxisWithLevels(Canvas canvas) {
@@ -223,6 +318,10 @@ public class GraphView extends View implements Observer {
             if (enableLabels) {
                 textPaint.setTextAlign(Paint.Align.RIGHT);
                 for (Pair<Float, String> labelY : labelsY) {
+                    if (labelY.first < clipBounds.top
+                            || labelY.first - textHeight > clipBounds.bottom) {
+                        continue;
+                    }
                     canvas.drawText(
                             labelY.second,
                             labelPlacePX - defaultAxisLabelMarginPX,
@@ -244,7 +343,7 @@ public class GraphView extends View implements Observer {
     }
 
     private void drawXAxis(Canvas canvas) {
-        if (enableXAxis) {
+        if (enableXAxis && clipBounds.bottom >= height - labelPlacePX - 1) {
             canvas.drawLine(
                     labelPlacePX, height - labelPlacePX - 1,
                     width - 1, height - labelPlacePX - 1,
@@ -266,59 +365,531 @@ public class GraphView extends View implements Observer {
     }
 
     private void clearPlot(Plot plot) {
-        plot.path.reset();
-        plot.fillPath.reset();
-        plot.pointsPX.clear();
+        plot.path.rewind();
+        plot.fillPath.rewind();
+        plot.pointsCount = 0;
+        plot.pendingStride = 0;
+        plot.pendingIterator = null;
     }
 
     private void changeGraph() {
         pxProY = (height - marginPX - labelPlacePX) / (float) maxY;
         pxProX = (width - labelPlacePX) / (float) (maxX - minX);
 
+        boolean coarse = false;
         for (Plot plot : plots) {
-            clearPlot(plot);
+            plot.stride = getLayoutStride(plot);
+            coarse |= plot.stride > 1;
             changePlot(plot);
         }
+        if (coarse) {
+            scheduleRefine();
+        }
 
         changeLabels();
+        geometryValid = width > 0 && height > 0;
+        saveGeometry();
     }
 
+    /**
+     * Project the plot with its stride and build primitives to draw at once,
+     * dropping a refinement in progress
+     */
     private void changePlot(Plot plot) {
-        List<Point> points = plot.provider.getPoints();
+        startProjection(plot, plot.stride);
+        continueProjection(plot, NO_DEADLINE);
+        takeProjection(plot);
+    }
 
-        List<Pair<Float, Float>> pointsPX = new ArrayList<Pair<Float, Float>>();
-        Path path = new Path();
+    /**
+     * Start projecting every stride-th point (and the last one) of the plot into the pending
+     * buffers; only the visible slice plus one point of margin on each side of an X-sorted
+     * plot is projected. Compressed series are decoded block by block: for X-sorted series
+     * only visible blocks and one block of margin on each side, for scatter plots every
+     * block outside of the visible range is skipped, and a stride of a block or more
+     * takes the raw first points of blocks without decoding
+     */
+    private void startProjection(Plot plot, int stride) {
+        plot.pendingStride = stride;
+        plot.pendingCount = 0;
+        plot.pendingIndex = 0;
+        plot.pendingProjected = false;
+        plot.pendingGeometryCursor = 0;
+        plot.pendingPath.rewind();
+        plot.pendingIterator = null;
+
+        if (plot.provider instanceof CompressedPointsProvider) {
+            CompressedSeries series = ((CompressedPointsProvider) plot.provider).getSeries();
+            int fromBlock = 0;
+            int toBlock = series.getBlockCount();
+            if (plot.sortedX) {
+                fromBlock = Math.max(0, firstBlockToX(series, minX) - 1);
+                toBlock = Math.min(toBlock, firstBlockFromX(series, maxX) + 1);
+            }
+            boolean scatter = plot.style.getType() == PlotStyle.Type.SCATTER;
+            int capacity = 0;
+            for (int b = fromBlock; b < toBlock; b++) {
+                // The last block can grow and become visible before the projection is done
+                if (!scatter || isBlockVisible(series, b) || b == toBlock - 1) {
+                    capacity += series.getBlockSize(b);
+                }
+            }
+            plot.pendingFrom = fromBlock;
+            plot.pendingTo = capacity == 0 ? fromBlock : toBlock;
+            plot.pendingCursor = fromBlock;
+            plot.pendingLastBlockSize = capacity == 0 ? 0 : series.getBlockSize(toBlock - 1);
+            plot.pendingByBlocks = stride >= series.getBlockCapacity();
+            int blockStride = stride / series.getBlockCapacity();
+            plot.obtainPendingPX(plot.pendingByBlocks
+                    ? (toBlock - fromBlock + blockStride - 1) / blockStride + 1
+                    : capacity / stride + 2);
+            return;
+        }
 
-        float x = (float) (labelPlacePX + pxProX * (points.get(0).getX() - minX));
-        float y = (float) (height - labelPlacePX - pxProY * points.get(0).getY());
-        path.moveTo(x, y);
-        pointsPX.add(new Pair<Float, Float>(x, y));
-
-        for (int i = 1; i < points.size(); i++) {
-            x = (float) (labelPlacePX + pxProX * (points.get(i).getX() - minX));
-            y = (float) (height - labelPlacePX - pxProY * points.get(i).getY());
-            path.lineTo(x, y);
-            pointsPX.add(new Pair<Float, Float>(x, y));
-        }
-        plot.path = path;
-        plot.pointsPX = pointsPX;
-
-        if (plot.style.isFillEnabled()) {
-            Path fillPath = new Path(path);
-            float y0 = height - labelPlacePX - 1;
-            if (y != y0) {
-                fillPath.lineTo(
-                        pointsPX.get(pointsPX.size() - 1).first,
-                        y0
-                );
-            }
-            fillPath.lineTo(
-                    pointsPX.get(0).first,
-                    y0
-            );
-            fillPath.close();
-            plot.fillPath = fillPath;
+        List<Point> points = plot.points;
+        int from = 0;
+        int to = points.size();
+        if (plot.sortedX && points instanceof RandomAccess) {
+            from = Math.max(0, lowerBoundX(points, minX) - 1);
+            to = Math.min(points.size(), upperBoundX(points, maxX) + 1);
+        }
+        plot.pendingFrom = from;
+        plot.pendingTo = to;
+        plot.pendingCursor = from;
+        if (!(points instanceof RandomAccess)) {
+            plot.pendingIterator = points.subList(from, to).iterator();
+        }
+        plot.obtainPendingPX((to - from + stride - 1) / stride + 1);
+    }
+
+    /**
+     * Continue the pending projection of the plot and its path until it is done
+     * or the deadline passes; the deadline is checked every slice of points
+     * (every block of compressed series), so the work can be resumed from there
+     *
+     * @return true if the pending projection is ready to be taken
+     */
+    private boolean continueProjection(Plot plot, long deadline) {
+        if (!plot.pendingProjected) {
+            plot.pendingProjected = plot.provider instanceof CompressedPointsProvider
+                    ? projectCompressedSlice(plot,
+                    ((CompressedPointsProvider) plot.provider).getSeries(), deadline)
+                    : projectSlice(plot, deadline);
+            if (!plot.pendingProjected) {
+                return false;
+            }
+        }
+        return buildPathSlice(plot, deadline);
+    }
+
+    private boolean projectSlice(Plot plot, long deadline) {
+        List<Point> points = plot.points;
+        float[] pointsPX = plot.pendingPX;
+        int n = plot.pendingCount * 2;
+        int checkAt = n + SLICE_POINTS * 2;
+        int stride = plot.pendingStride;
+        int from = plot.pendingFrom;
+        int to = plot.pendingTo;
+        int i = plot.pendingCursor;
+
+        if (points instanceof ConcurrentPointsProvider.Snapshot) {
+            ConcurrentPointsProvider.Snapshot snapshot = (ConcurrentPointsProvider.Snapshot) points;
+            for (; i < to; i = nextIndex(i, stride, to)) {
+                if (n >= checkAt) {
+                    if (SystemClock.uptimeMillis() >= deadline) {
+                        break;
+                    }
+                    checkAt = n + SLICE_POINTS * 2;
+                }
+                pointsPX[n++] = (float) (labelPlacePX + pxProX * (snapshot.getX(i) - minX));
+                pointsPX[n++] = (float) (height - labelPlacePX - pxProY * snapshot.getY(i));
+            }
+        } else if (points instanceof RandomAccess) {
+            for (; i < to; i = nextIndex(i, stride, to)) {
+                if (n >= checkAt) {
+                    if (SystemClock.uptimeMillis() >= deadline) {
+                        break;
+                    }
+                    checkAt = n + SLICE_POINTS * 2;
+                }
+                Point point = points.get(i);
+                pointsPX[n++] = (float) (labelPlacePX + pxProX * (point.getX() - minX));
+                pointsPX[n++] = (float) (height - labelPlacePX - pxProY * point.getY());
+            }
+        } else {
+            Iterator<Point> iterator = plot.pendingIterator;
+            for (; i < to; i++) {
+                if (n >= checkAt) {
+                    if (SystemClock.uptimeMillis() >= deadline) {
+                        break;
+                    }
+                    checkAt = n + SLICE_POINTS * 2;
+                }
+                Point point = iterator.next();
+                if ((i - from) % stride == 0 || i == to - 1) {
+                    pointsPX[n++] = (float) (labelPlacePX + pxProX * (point.getX() - minX));
+                    pointsPX[n++] = (float) (height - labelPlacePX - pxProY * point.getY());
+                }
+            }
+        }
+        plot.pendingCursor = i;
+        plot.pendingCount = n / 2;
+        return i >= to;
+    }
+
+    private boolean projectCompressedSlice(Plot plot, CompressedSeries series, long deadline) {
+        float[] pointsPX = plot.pendingPX;
+        int n = plot.pendingCount * 2;
+        int stride = plot.pendingStride;
+        int toBlock = plot.pendingTo;
+        int b = plot.pendingCursor;
+
+        if (plot.pendingByBlocks) {
+            // Coarse projection from the raw first points of every blockStride-th block
+            int blockStride = stride / series.getBlockCapacity();
+            for (; b < toBlock; b = nextIndex(b, blockStride, toBlock)) {
+                pointsPX[n++] = (float) (labelPlacePX + pxProX * (series.getBlockFirstX(b) - minX));
+                pointsPX[n++] = (float) (height - labelPlacePX - pxProY * series.getBlockFirstY(b));
+            }
+            plot.pendingCursor = b;
+            plot.pendingCount = n / 2;
+            return true;
+        }
+
+        if (blockXs.length < series.getBlockCapacity()) {
+            blockXs = new double[series.getBlockCapacity()];
+            blockYs = new double[series.getBlockCapacity()];
+        }
+        boolean scatter = plot.style.getType() == PlotStyle.Type.SCATTER;
+        int index = plot.pendingIndex;
+        while (b < toBlock) {
+            if (!scatter || isBlockVisible(series, b)) {
+                int count = series.decodeBlock(b, blockXs, blockYs);
+                if (b == toBlock - 1) {
+                    // Points appended since the start do not fit into the buffer
+                    count = Math.min(count, plot.pendingLastBlockSize);
+                }
+                boolean lastIncluded = true;
+                for (int i = 0; i < count; i++, index++) {
+                    lastIncluded = index % stride == 0;
+                    if (lastIncluded) {
+                        pointsPX[n++] = (float) (labelPlacePX + pxProX * (blockXs[i] - minX));
+                        pointsPX[n++] = (float) (height - labelPlacePX - pxProY * blockYs[i]);
+                    }
+                }
+                if (!lastIncluded && b == toBlock - 1) {
+                    pointsPX[n++] = (float) (labelPlacePX + pxProX * (blockXs[count - 1] - minX));
+                    pointsPX[n++] = (float) (height - labelPlacePX - pxProY * blockYs[count - 1]);
+                }
+            }
+            b++;
+            if (b < toBlock && SystemClock.uptimeMillis() >= deadline) {
+                break;
+            }
+        }
+        plot.pendingIndex = index;
+        plot.pendingCursor = b;
+        plot.pendingCount = n / 2;
+        return b >= toBlock;
+    }
+
+    /**
+     * Continue the pending path of a line or step plot from its pending projection
+     *
+     * @return true if the path is built
+     */
+    private boolean buildPathSlice(Plot plot, long deadline) {
+        PlotStyle.Type type = plot.style.getType();
+        if (type != PlotStyle.Type.LINE && type != PlotStyle.Type.STEP) {
+            return true;
+        }
+        boolean step = type == PlotStyle.Type.STEP;
+        float[] pointsPX = plot.pendingPX;
+        int count = plot.pendingCount;
+        Path path = plot.pendingPath;
+        int i = plot.pendingGeometryCursor;
+        if (i == 0 && count > 0) {
+            path.moveTo(pointsPX[0], pointsPX[1]);
+            i = 1;
+        }
+        int checkAt = i + SLICE_POINTS;
+        for (; i < count; i++) {
+            if (i >= checkAt) {
+                if (SystemClock.uptimeMillis() >= deadline) {
+                    break;
+                }
+                checkAt = i + SLICE_POINTS;
+            }
+            if (step) {
+                path.lineTo(pointsPX[i * 2], pointsPX[i * 2 - 1]);
+            }
+            path.lineTo(pointsPX[i * 2], pointsPX[i * 2 + 1]);
+        }
+        plot.pendingGeometryCursor = i;
+        return i >= count;
+    }
+
+    /**
+     * Draw the pending projection from now on, keeping the current one as previous
+     * to find what changed
+     */
+    private void takeProjection(Plot plot) {
+        plot.previousCount = plot.pointsCount;
+        plot.previousBarWidthPX = plot.barWidthPX;
+
+        float[] pointsPX = plot.pointsPX;
+        plot.pointsPX = plot.pendingPX;
+        plot.pendingPX = pointsPX;
+        plot.pointsCount = plot.pendingCount;
+        Path path = plot.path;
+        plot.path = plot.pendingPath;
+        plot.pendingPath = path;
+        plot.stride = plot.pendingStride;
+        plot.pendingStride = 0;
+        plot.pendingIterator = null;
+
+        changeGeometry(plot);
+    }
+
+    /**
+     * @return index after i when taking every stride-th index and the last one before end
+     */
+    private static int nextIndex(int i, int stride, int end) {
+        if (i + stride < end) {
+            return i + stride;
+        }
+        return i == end - 1 ? end : end - 1;
+    }
+
+    /**
+     * @return stride to project the plot with on a full layout: coarse on the first layout,
+     * after a size change or when the plot grew by more than the coarse budget since
+     * the last layout, otherwise the stride the plot is refined to by now
+     */
+    private int getLayoutStride(Plot plot) {
+        int size = plot.provider instanceof CompressedPointsProvider
+                ? ((CompressedPointsProvider) plot.provider).getSeries().size()
+                : plot.points.size();
+        int budget = Math.max(COARSE_MIN_POINTS, width * COARSE_POINTS_PER_PX);
+        boolean coarse = plot.layoutWidth != width || plot.layoutHeight != height
+                || size - plot.layoutSize > budget;
+        plot.layoutWidth = width;
+        plot.layoutHeight = height;
+        plot.layoutSize = size;
+
+        if (!progressiveRendering) {
+            return 1;
+        }
+        if (coarse) {
+            // Keep the first frame within the budget of points per pixel of width
+            int projectedSize = getProjectedSize(plot);
+            return Math.max(1, (projectedSize + budget - 1) / budget);
+        }
+        return plot.stride;
+    }
+
+    /**
+     * @return number of points to project: the visible slice and its margin
+     * for X-sorted plots, all points otherwise
+     */
+    private int getProjectedSize(Plot plot) {
+        if (plot.provider instanceof CompressedPointsProvider) {
+            CompressedSeries series = ((CompressedPointsProvider) plot.provider).getSeries();
+            if (!plot.sortedX) {
+                return series.size();
+            }
+            int fromBlock = Math.max(0, firstBlockToX(series, minX) - 1);
+            int toBlock = Math.min(series.getBlockCount(), firstBlockFromX(series, maxX) + 1);
+            int size = 0;
+            for (int b = fromBlock; b < toBlock; b++) {
+                size += series.getBlockSize(b);
+            }
+            return size;
+        }
+
+        List<Point> points = plot.points;
+        if (plot.sortedX && points instanceof RandomAccess) {
+            int from = Math.max(0, lowerBoundX(points, minX) - 1);
+            int to = Math.min(points.size(), upperBoundX(points, maxX) + 1);
+            return Math.max(0, to - from);
+        }
+        return points.size();
+    }
+
+    private void scheduleRefine() {
+        if (refineScheduled || interacting || Looper.myLooper() == null) {
+            return;
+        }
+        refineScheduled = true;
+        Looper.myQueue().addIdleHandler(refineHandler);
+    }
+
+    /**
+     * Project coarse plots in finer levels while the main thread is idle, for not longer
+     * than the budget per idle pass (but at least a slice of points); a level that does
+     * not fit into the budget is built in slices over several passes and drawn once
+     * it is complete
+     *
+     * @return true if there are plots left to refine
+     */
+    boolean refine(long budgetMs) {
+        if (interacting || !geometryValid) {
+            refineScheduled = false;
+            return false;
+        }
+        long deadline = SystemClock.uptimeMillis() + budgetMs;
+        boolean worked = false;
+        boolean changed = false;
+        boolean coarse = false;
+        for (Plot plot : plots) {
+            if (plot.stride == 1) {
+                continue;
+            }
+            if (worked && SystemClock.uptimeMillis() >= deadline) {
+                coarse = true;
+                break;
+            }
+            if (plot.pendingStride == 0) {
+                startProjection(plot, Math.max(1, plot.stride / REFINE_FACTOR));
+            }
+            worked = true;
+            if (continueProjection(plot, deadline)) {
+                takeProjection(plot);
+                changed = true;
+            }
+            coarse |= plot.stride > 1;
+        }
+        if (changed) {
+            invalidate();
+        }
+        refineScheduled = coarse;
+        return coarse;
+    }
+
+    private boolean isBlockVisible(CompressedSeries series, int block) {
+        return series.getBlockMaxX(block) >= minX && series.getBlockMinX(block) <= maxX;
+    }
+
+    /**
+     * @return index of the first block of X-sorted series with max X not less than the given one
+     */
+    private static int firstBlockToX(CompressedSeries series, double x) {
+        int low = 0;
+        int high = series.getBlockCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (series.getBlockMaxX(middle) < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the first block of X-sorted series with min X greater than the given one
+     */
+    private static int firstBlockFromX(CompressedSeries series, double x) {
+        int low = 0;
+        int high = series.getBlockCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (series.getBlockMinX(middle) <= x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Build the rest of primitives to draw from projected points and the path,
+     * according to the plot type
+     */
+    private void changeGeometry(Plot plot) {
+        float[] pointsPX = plot.pointsPX;
+        int count = plot.pointsCount;
+        float y0 = height - labelPlacePX - 1;
+
+        switch (plot.style.getType()) {
+            case SCATTER:
+                break;
+            case DENSITY:
+                if (width > 0 && height > 0) {
+                    plot.densityBitmap = densityRenderer.render(
+                            pointsPX, count, width, height,
+                            plot.style.getLinePaint().getColor(), plot.densityBitmap
+                    );
+                }
+                break;
+            case BAR:
+                float[] barsPX = plot.obtainBarsPX(count);
+                for (int i = 0, j = 0; i < count * 2; i += 2) {
+                    barsPX[j++] = pointsPX[i];
+                    barsPX[j++] = y0;
+                    barsPX[j++] = pointsPX[i];
+                    barsPX[j++] = pointsPX[i + 1];
+                }
+                float barWidthPX = plot.style.getBarWidth();
+                if (barWidthPX <= 0) {
+                    barWidthPX = Math.max(
+                            1f,
+                            (width - labelPlacePX) / Math.max(1, count) * AUTO_BAR_WIDTH_RATIO
+                    );
+                }
+                plot.barWidthPX = barWidthPX;
+                break;
+            default:
+                Path fillPath = plot.fillPath;
+                fillPath.rewind();
+                if (plot.style.isFillEnabled() && count > 0) {
+                    fillPath.set(plot.path);
+                    if (pointsPX[count * 2 - 1] != y0) {
+                        fillPath.lineTo(pointsPX[count * 2 - 2], y0);
+                    }
+                    fillPath.lineTo(pointsPX[0], y0);
+                    fillPath.close();
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return index of the first point with X not less than the given one,
+     * or size of the list if there is no such point
+     */
+    private static int lowerBoundX(List<Point> points, double x) {
+        int low = 0;
+        int high = points.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (points.get(middle).getX() < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
+        return low;
+    }
+
+    /**
+     * @return index of the first point with X greater than the given one,
+     * or size of the list if there is no such point
+     */
+    private static int upperBoundX(List<Point> points, double x) {
+        int low = 0;
+        int high = points.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (points.get(middle).getX() <= x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
     private void changeLabels() {
@@ -332,8 +903,10 @@ public class GraphView extends View implements Observer {
             Plot leadPlotX = getPlotWithMaxScaleStepX();
             double maxScaleStepX = leadPlotX.provider.getScaleStepX();
 
-            for (double x = minX; x <= maxX; x += maxScaleStepX) {
-                String labelX = leadPlotX.provider.getLabelX(x);
+            int count = formatTicks(leadPlotX.provider, true, minX, maxX, maxScaleStepX);
+            for (int i = 0; i < count; i++) {
+                double x = tickValues[i];
+                String labelX = tickLabels[i];
                 textPaint.getTextBounds(labelX, 0, labelX.length(), rect);
                 float pxX = labelPlacePX + (float) (x - minX) * pxProX;
                 float pxXFit = pxX - rect.width() / 2;
@@ -357,8 +930,10 @@ public class GraphView extends View implements Observer {
             ));
 
             lastLabelPX = height - labelPlacePX - rect.height() / 2;
-            for (double y = 0; y <= maxY; y += maxScaleStepY) {
-                String labelY = leadPlotY.provider.getLabelY(y);
+            int count = formatTicks(leadPlotY.provider, false, 0, maxY, maxScaleStepY);
+            for (int i = 0; i < count; i++) {
+                double y = tickValues[i];
+                String labelY = tickLabels[i];
                 textPaint.getTextBounds(labelY, 0, labelY.length(), rect);
                 float pxY = height - labelPlacePX - pxProY * (float) y + rect.height() / 2;
                 if ((lastLabelPX - pxY >= spacingPXY) && (pxY - rect.height() >= 0)) {
@@ -369,6 +944,74 @@ public class GraphView extends View implements Observer {
         }
     }
 
+    /**
+     * Fill tickValues and tickLabels with ticks in from..to on multiples of the given step,
+     * so that a pan keeps the values (and the cached labels) of the ticks still in view;
+     * labels are taken from cache, the rest are formatted by the provider in one pass
+     *
+     * @return number of ticks
+     */
+    private int formatTicks(PointsProvider provider, boolean axisX,
+                            double from, double to, double step) {
+        LruCache<LabelKey, String> cache = axisX ? labelCacheX : labelCacheY;
+        if (axisX && labelCacheProviderX != provider) {
+            cache.evictAll();
+            labelCacheProviderX = provider;
+        } else if (!axisX && labelCacheProviderY != provider) {
+            cache.evictAll();
+            labelCacheProviderY = provider;
+        }
+
+        int count = 0;
+        for (long tick = (long) Math.ceil(from / step); tick * step <= to; tick++) {
+            if (count == tickValues.length) {
+                tickValues = Arrays.copyOf(tickValues, count * 2);
+                tickLabels = new String[count * 2];
+            }
+            tickValues[count++] = tick * step;
+        }
+
+        int misses = 0;
+        for (int i = 0; i < count; i++) {
+            labelKeyProbe.set(tickValues[i], step);
+            String label = cache.get(labelKeyProbe);
+            tickLabels[i] = label;
+            if (label == null) {
+                if (misses == tickMisses.length) {
+                    tickMisses = Arrays.copyOf(tickMisses, misses * 2);
+                    missValues = Arrays.copyOf(missValues, misses * 2);
+                    missLabels = new String[misses * 2];
+                }
+                tickMisses[misses] = i;
+                missValues[misses++] = tickValues[i];
+            }
+        }
+        if (misses == 0) {
+            return count;
+        }
+
+        if (provider instanceof BatchLabelFormatter) {
+            BatchLabelFormatter formatter = (BatchLabelFormatter) provider;
+            if (axisX) {
+                formatter.formatLabelsX(missValues, misses, missLabels);
+            } else {
+                formatter.formatLabelsY(missValues, misses, missLabels);
+            }
+        } else {
+            for (int i = 0; i < misses; i++) {
+                missLabels[i] = axisX
+                        ? provider.getLabelX(missValues[i])
+                        : provider.getLabelY(missValues[i]);
+            }
+        }
+
+        for (int i = 0; i < misses; i++) {
+            tickLabels[tickMisses[i]] = missLabels[i];
+            cache.put(new LabelKey(missValues[i], step), missLabels[i]);
+        }
+        return count;
+    }
+
     private Plot getPlotWithMaxScaleStepX() throws IllegalArgumentException {
         TreeSet<Plot> plotTreeSet = new TreeSet<>(new ComparatorScaleStepX());
         plotTreeSet.addAll(plots);
@@ -406,62 +1049,251 @@ public class GraphView extends View implements Observer {
     public void update(Observable observable, Object data) {
 
         for (Plot plot : plots) {
-            if (plot.provider.getPoints().isEmpty()) {
+            if (isEmpty(plot)) {
                 clear();
                 return;
             }
         }
 
-        maxY = getMaxY();
-        maxX = getMaxX();
-        minX = getMinX();
-        changeGraph();
-        invalidate();
+        double oldMinX = minX;
+        double oldMaxX = maxX;
+        double oldMaxY = maxY;
+        changeBounds();
+
+        if (geometryValid && minX == oldMinX && maxX == oldMaxX && maxY == oldMaxY) {
+            // Axes and labels are the same, repaint only what changed in plots
+            changePlotsInPlace();
+        } else {
+            changeGraph();
+            invalidate();
+        }
     }
 
-    private double getMaxY() {
-        Point.ComparatorY comparator = new Point.ComparatorY();
-        double maxY = Collections.max(
-                plots
-                        .get(0)
-                        .provider
-                        .getPoints(),
-                comparator
-        ).getY();
-        for (int i = 1; i < plots.size(); i++) {
-            double y = Collections.max(plots.get(i).provider.getPoints(), comparator).getY();
-            if (maxY < y) {
-                maxY = y;
+    /**
+     * Re-project plots keeping the scale and invalidate the bounding box of changed points
+     * (the new tail segment for appended points), extended to X-axis for filled plots and bars
+     */
+    private void changePlotsInPlace() {
+        dirtyLeft = Float.MAX_VALUE;
+        dirtyTop = Float.MAX_VALUE;
+        dirtyRight = -Float.MAX_VALUE;
+        dirtyBottom = -Float.MAX_VALUE;
+
+        for (Plot plot : plots) {
+            changePlot(plot);
+            includeChanges(plot);
+        }
+
+        if (dirtyLeft <= dirtyRight) {
+            invalidate(
+                    (int) Math.floor(dirtyLeft),
+                    (int) Math.floor(dirtyTop),
+                    (int) Math.ceil(dirtyRight),
+                    (int) Math.ceil(dirtyBottom)
+            );
+        }
+    }
+
+    private void includeChanges(Plot plot) {
+        float[] oldPX = plot.pendingPX;
+        float[] newPX = plot.pointsPX;
+        int oldCount = plot.previousCount;
+        int newCount = plot.pointsCount;
+        int common = Math.min(oldCount, newCount);
+
+        int first = 0;
+        while (first < common && samePoint(oldPX, newPX, first)) {
+            first++;
+        }
+        if (first == common && oldCount == newCount) {
+            return;
+        }
+        int last = Math.max(oldCount, newCount) - 1;
+        if (oldCount == newCount) {
+            while (last > first && samePoint(oldPX, newPX, last)) {
+                last--;
+            }
+        }
+
+        if (plot.style.getType() == PlotStyle.Type.BAR && plot.barWidthPX != plot.previousBarWidthPX
+                || plot.style.getType() == PlotStyle.Type.DENSITY) {
+            // Every bar changed its width, or the density of every pixel could change
+            includeDirty(0, 0, width, height);
+            return;
+        }
+
+        // Segments to neighbours of changed points change too
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (int pass = 0; pass < 2; pass++) {
+            float[] pointsPX = pass == 0 ? oldPX : newPX;
+            int to = Math.min(pass == 0 ? oldCount : newCount, last + 2);
+            for (int i = Math.max(0, first - 1); i < to; i++) {
+                left = Math.min(left, pointsPX[i * 2]);
+                right = Math.max(right, pointsPX[i * 2]);
+                top = Math.min(top, pointsPX[i * 2 + 1]);
+                bottom = Math.max(bottom, pointsPX[i * 2 + 1]);
             }
         }
-        return maxY;
+        if (plot.style.getType() == PlotStyle.Type.BAR
+                || plot.style.getType() != PlotStyle.Type.SCATTER && plot.style.isFillEnabled()) {
+            bottom = Math.max(bottom, height - labelPlacePX - 1);
+        }
+
+        float pad = 1 + Math.max(
+                plot.style.getLinePaint().getStrokeWidth(),
+                Math.max(plot.style.getPointPaint().getStrokeWidth(), plot.barWidthPX)
+        ) / 2;
+        Drawable pointDrawable = plot.style.getPointDrawable();
+        if (pointDrawable != null) {
+            pad += Math.max(
+                    pointDrawable.getIntrinsicWidth(),
+                    pointDrawable.getIntrinsicHeight()
+            ) / 2;
+        }
+        includeDirty(left - pad, top - pad, right + pad, bottom + pad);
     }
 
-    private double getMaxX() {
-        Point.ComparatorX comparator = new Point.ComparatorX();
-        double maxX = Collections.max(plots.get(0).provider.getPoints(), comparator).getX();
-        for (int i = 1; i < plots.size(); i++) {
-            double x = Collections.max(plots.get(i).provider.getPoints(), comparator).getX();
-            if (maxX < x) {
-                maxX = x;
+    private static boolean samePoint(float[] oldPX, float[] newPX, int i) {
+        return oldPX[i * 2] == newPX[i * 2] && oldPX[i * 2 + 1] == newPX[i * 2 + 1];
+    }
+
+    private void includeDirty(float left, float top, float right, float bottom) {
+        dirtyLeft = Math.min(dirtyLeft, left);
+        dirtyTop = Math.min(dirtyTop, top);
+        dirtyRight = Math.max(dirtyRight, right);
+        dirtyBottom = Math.max(dirtyBottom, bottom);
+    }
+
+    /**
+     * Scan all plots for bounds and X-order in one pass per plot
+     */
+    private void changeBounds() {
+        maxY = -Double.MAX_VALUE;
+        double dataMinX = Double.MAX_VALUE;
+        double dataMaxX = -Double.MAX_VALUE;
+
+        for (Plot plot : plots) {
+            if (plot.provider instanceof CompressedPointsProvider) {
+                // Bounds are kept by the series itself, no need to decode
+                CompressedSeries series = ((CompressedPointsProvider) plot.provider).getSeries();
+                plot.sortedX = series.isSortedX();
+                if (!plot.sortedX) {
+                    maxY = Math.max(maxY, series.getMaxY());
+                }
+                dataMinX = Math.min(dataMinX, series.getMinX());
+                dataMaxX = Math.max(dataMaxX, series.getMaxX());
+                continue;
+            }
+
+            List<Point> points = plot.points;
+            if (isOrderedByX(plot)) {
+                // X-range is given by the first and the last points,
+                // max Y is taken over the visible slice below
+                plot.sortedX = true;
+                dataMinX = Math.min(dataMinX, getX(points, 0));
+                dataMaxX = Math.max(dataMaxX, getX(points, points.size() - 1));
+                continue;
+            }
+
+            PlotBounds bounds = plotBounds;
+            bounds.reset();
+            if (points instanceof ConcurrentPointsProvider.Snapshot) {
+                ConcurrentPointsProvider.Snapshot snapshot = (ConcurrentPointsProvider.Snapshot) points;
+                for (int i = 0; i < snapshot.size(); i++) {
+                    bounds.include(snapshot.getX(i), snapshot.getY(i));
+                }
+            } else {
+                for (Point point : points) {
+                    bounds.include(point.getX(), point.getY());
+                }
+            }
+            plot.sortedX = plot.provider instanceof SortedPointsProvider || bounds.sortedX;
+            maxY = Math.max(maxY, bounds.maxY);
+            dataMinX = Math.min(dataMinX, bounds.minX);
+            dataMaxX = Math.max(dataMaxX, bounds.maxX);
+        }
+
+        if (viewportXFixed) {
+            minX = viewportMinX;
+            maxX = viewportMaxX;
+        } else {
+            minX = dataMinX;
+            maxX = dataMaxX;
+        }
+
+        for (Plot plot : plots) {
+            if (plot.sortedX && (plot.provider instanceof CompressedPointsProvider
+                    || isOrderedByX(plot))) {
+                maxY = Math.max(maxY, getVisibleMaxY(plot));
             }
         }
-        return maxX;
     }
 
-    private double getMinX() {
-        Point.ComparatorX comparator = new Point.ComparatorX();
-        double minX = Collections.min(plots.get(0).provider.getPoints(), comparator).getX();
-        for (int i = 1; i < plots.size(); i++) {
-            double x = Collections.min(plots.get(i).provider.getPoints(), comparator).getX();
-            if (minX > x) {
-                minX = x;
+    /**
+     * @return true if points of the plot are declared sorted by X and can be searched by index
+     */
+    private static boolean isOrderedByX(Plot plot) {
+        return plot.provider instanceof SortedPointsProvider && plot.points instanceof RandomAccess;
+    }
+
+    /**
+     * @return max Y of the points projected for X-sorted plot: the visible slice
+     * and one point (block for compressed series) of margin on each side
+     */
+    private double getVisibleMaxY(Plot plot) {
+        double visibleMaxY = -Double.MAX_VALUE;
+        if (plot.provider instanceof CompressedPointsProvider) {
+            CompressedSeries series = ((CompressedPointsProvider) plot.provider).getSeries();
+            int fromBlock = Math.max(0, firstBlockToX(series, minX) - 1);
+            int toBlock = Math.min(series.getBlockCount(), firstBlockFromX(series, maxX) + 1);
+            for (int b = fromBlock; b < toBlock; b++) {
+                visibleMaxY = Math.max(visibleMaxY, series.getBlockMaxY(b));
             }
+            return visibleMaxY;
         }
-        return minX;
+
+        List<Point> points = plot.points;
+        int from = Math.max(0, lowerBoundX(points, minX) - 1);
+        int to = Math.min(points.size(), upperBoundX(points, maxX) + 1);
+        if (points instanceof ConcurrentPointsProvider.Snapshot) {
+            ConcurrentPointsProvider.Snapshot snapshot = (ConcurrentPointsProvider.Snapshot) points;
+            for (int i = from; i < to; i++) {
+                visibleMaxY = Math.max(visibleMaxY, snapshot.getY(i));
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                visibleMaxY = Math.max(visibleMaxY, points.get(i).getY());
+            }
+        }
+        return visibleMaxY;
+    }
+
+    private static double getX(List<Point> points, int index) {
+        if (points instanceof ConcurrentPointsProvider.Snapshot) {
+            return ((ConcurrentPointsProvider.Snapshot) points).getX(index);
+        }
+        return points.get(index).getX();
+    }
+
+    /**
+     * Take points of the plot for this pass (a snapshot for concurrent providers)
+     *
+     * @return true if the plot has no points
+     */
+    private static boolean isEmpty(Plot plot) {
+        if (plot.provider instanceof CompressedPointsProvider) {
+            return ((CompressedPointsProvider) plot.provider).getSeries().size() == 0;
+        }
+        plot.points = plot.provider.getPoints();
+        return plot.points.isEmpty();
     }
 
     private void clear() {
+        geometryValid = false;
+        saveGeometry();
         for (Plot plot : plots) {
             clearPlot(plot);
         }
@@ -470,29 +1302,240 @@ public class GraphView extends View implements Observer {
         invalidate();
     }
 
+    /**
+     * Take the retained state back if it was not attached to another view meanwhile,
+     * catching up with updates of providers while detached
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (state.view != null) {
+            return;
+        }
+        state.view = this;
+        if (state.updateMissed) {
+            state.updateMissed = false;
+            update(null, null);
+        }
+        scheduleRefineIfCoarse();
+    }
+
+    /**
+     * Release the retained state, so that it does not hold a detached view
+     * until it is attached to a new one
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (state.view == this) {
+            state.view = null;
+        }
+        if (refineScheduled) {
+            Looper.myQueue().removeIdleHandler(refineHandler);
+            refineScheduled = false;
+        }
+    }
+
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
         width = w;
         height = h;
 
+        if (geometryValid && w == state.width && h == state.height
+                && labelPlacePX == state.labelPlacePX && marginPX == state.marginPX) {
+            // Points were projected for this size already (example: by a retained state);
+            // labels are laid out again, text size and spacing could change with the theme
+            changeLabels();
+            saveGeometry();
+            invalidate();
+            return;
+        }
+
         for (Plot plot : plots) {
-            if (plot.provider.getPoints().isEmpty()) {
+            if (isEmpty(plot)) {
                 clear();
                 return;
             }
         }
 
+        if (!geometryValid) {
+            // Plots could be added or replaced since the last update
+            changeBounds();
+        }
         changeGraph();
         invalidate();
     }
 
+    /**
+     * @return plots of this view with their projected geometry, bounds and labels, to keep
+     * across a configuration change and attach to the new view with
+     * {@link #setRetainedState(RetainedState)}
+     */
+    public RetainedState getRetainedState() {
+        return state;
+    }
+
+    /**
+     * Take plots, projected geometry, bounds and labels of a view destroyed by a configuration
+     * change, instead of adding plots again; points are projected again only if the size
+     * of this view differs
+     */
+    public void setRetainedState(RetainedState retainedState) {
+        if (retainedState.view != null && retainedState.view != this) {
+            retainedState.view.setRetainedState(new RetainedState());
+        }
+        state = retainedState;
+        state.view = this;
+        plots = state.plots;
+        labelsX = state.labelsX;
+        labelsY = state.labelsY;
+
+        // Size the state was projected for, until this view is laid out
+        width = state.width;
+        height = state.height;
+        geometryValid = state.geometryValid;
+        pxProX = state.pxProX;
+        pxProY = state.pxProY;
+        minX = state.minX;
+        maxX = state.maxX;
+        maxY = state.maxY;
+        viewportXFixed = state.viewportXFixed;
+        viewportMinX = state.viewportMinX;
+        viewportMaxX = state.viewportMaxX;
+        textHeight = state.textHeight;
+
+        if (state.updateMissed) {
+            state.updateMissed = false;
+            update(null, null);
+        }
+        scheduleRefineIfCoarse();
+        invalidate();
+    }
+
+    private void scheduleRefineIfCoarse() {
+        for (Plot plot : plots) {
+            if (plot.stride > 1) {
+                scheduleRefine();
+                break;
+            }
+        }
+    }
+
+    private void saveGeometry() {
+        state.geometryValid = geometryValid;
+        state.width = width;
+        state.height = height;
+        state.pxProX = pxProX;
+        state.pxProY = pxProY;
+        state.minX = minX;
+        state.maxX = maxX;
+        state.maxY = maxY;
+        state.viewportXFixed = viewportXFixed;
+        state.viewportMinX = viewportMinX;
+        state.viewportMaxX = viewportMaxX;
+        state.textHeight = textHeight;
+        state.labelPlacePX = labelPlacePX;
+        state.marginPX = marginPX;
+    }
+
     public void addPlot(PointsProvider pointsProvider, PlotStyle plotStyle) {
         plots.add(new Plot(pointsProvider, plotStyle));
-        pointsProvider.addObserver(this);
+        geometryValid = false;
+        saveGeometry();
+        pointsProvider.addObserver(state);
         invalidate();
     }
 
+    /**
+     * Replace all plots without observing providers; used for offscreen rendering,
+     * where a view is reused for many charts and {@link #update(Observable, Object)}
+     * is called explicitly. Density bitmaps of the previous chart are reused
+     * by the plots at the same positions
+     */
+    void setPlots(List<PointsProvider> providers, List<PlotStyle> styles) {
+        List<Plot> previousPlots = new ArrayList<Plot>(plots);
+        plots.clear();
+        geometryValid = false;
+        saveGeometry();
+        for (int i = 0; i < providers.size(); i++) {
+            Plot plot = new Plot(providers.get(i), styles.get(i));
+            if (i < previousPlots.size()) {
+                plot.densityBitmap = previousPlots.get(i).densityBitmap;
+            }
+            plots.add(plot);
+        }
+    }
+
+    /**
+     * Show only the given range of X-values instead of the range of all points;
+     * for X-sorted plots only the visible points are projected and drawn. Y-axis of plots
+     * known to be X-sorted ({@link SortedPointsProvider}, sorted compressed series)
+     * is scaled to the visible points only
+     *
+     * @param minX - X-value at the Y-axis
+     * @param maxX - X-value at the right edge of the view
+     */
+    public void setViewportX(double minX, double maxX) {
+        if (!(minX < maxX)) {
+            throw new IllegalArgumentException(
+                    "Viewport minX should be less than maxX, got " + minX + " and " + maxX
+            );
+        }
+        viewportXFixed = true;
+        viewportMinX = minX;
+        viewportMaxX = maxX;
+        saveGeometry();
+        if (!plots.isEmpty()) {
+            update(null, null);
+        }
+    }
+
+    /**
+     * @return true if huge plots are drawn coarse first and refined when idle
+     */
+    public boolean isProgressiveRendering() {
+        return progressiveRendering;
+    }
+
+    /**
+     * @param progressiveRendering - set it to true to draw huge plots decimated first
+     *                             (about two points per pixel of width) and refine them
+     *                             to all points while the main thread is idle
+     */
+    public void setProgressiveRendering(boolean progressiveRendering) {
+        this.progressiveRendering = progressiveRendering;
+    }
+
+    /**
+     * Tell the view that the user is scrolling, zooming or flinging it: progressive
+     * rendering keeps coarse plots until the interaction ends
+     *
+     * @param interacting - true when a gesture or fling starts, false when it ends
+     */
+    public void setInteracting(boolean interacting) {
+        this.interacting = interacting;
+        if (!interacting) {
+            for (Plot plot : plots) {
+                if (plot.stride > 1) {
+                    scheduleRefine();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Show the whole range of X-values of all points again
+     */
+    public void resetViewportX() {
+        viewportXFixed = false;
+        saveGeometry();
+        if (!plots.isEmpty()) {
+            update(null, null);
+        }
+    }
+
     public int getTextColor() {
         return textColor;
     }
@@ -539,7 +1582,8 @@ public class GraphView extends View implements Observer {
 
     public void setTextSize(float textSize) {
         this.textSize = textSize;
-        invalidate();
+        textPaint.setTextSize(textSize);
+        invalidateGeometry();
     }
 
     /**
@@ -554,7 +1598,7 @@ public class GraphView extends View implements Observer {
      */
     public void setSpacingPXX(float spacingPXX) {
         this.spacingPXX = spacingPXX;
-        invalidate();
+        invalidateGeometry();
     }
 
     /**
@@ -569,7 +1613,7 @@ public class GraphView extends View implements Observer {
      */
     public void setSpacingPXY(float spacingPXY) {
         this.spacingPXY = spacingPXY;
-        invalidate();
+        invalidateGeometry();
     }
 
     /**
@@ -584,20 +1628,211 @@ public class GraphView extends View implements Observer {
      */
     public void setLabelPlacePX(float labelPlacePX) {
         this.labelPlacePX = labelPlacePX;
+        invalidateGeometry();
+    }
+
+    /**
+     * Scale or labels depend on the changed attribute: the next update lays out
+     * the whole graph again instead of repainting only what changed in plots
+     */
+    private void invalidateGeometry() {
+        geometryValid = false;
+        saveGeometry();
         invalidate();
     }
 
-    private class Plot {
+    /**
+     * @return projected (x, y) pairs of the plot, for tests
+     */
+    float[] getProjectedPoints(int plotIndex) {
+        Plot plot = plots.get(plotIndex);
+        return Arrays.copyOf(plot.pointsPX, plot.pointsCount * 2);
+    }
+
+    /**
+     * @return X-axis labels with their positions, for tests
+     */
+    List<Pair<Float, String>> getLabelsX() {
+        return labelsX;
+    }
+
+    /**
+     * @return Y-axis labels with their positions, for tests
+     */
+    List<Pair<Float, String>> getLabelsY() {
+        return labelsY;
+    }
+
+    /**
+     * Plots of a GraphView with their projected geometry, bounds and labels, which can outlive
+     * the view: keep it across a configuration change (example: return it from
+     * Activity.onRetainCustomNonConfigurationInstance()) and pass it to
+     * {@link GraphView#setRetainedState(RetainedState)} of the new view.
+     * Providers notify the state, and it forwards to the view it is attached to,
+     * so providers do not hold destroyed views. Providers and styles must not hold
+     * the Activity themselves
+     */
+    public static class RetainedState implements Observer {
+        private final List<Plot> plots = new ArrayList<Plot>();
+        private final List<Pair<Float, String>> labelsX = new ArrayList<Pair<Float, String>>();
+        private final List<Pair<Float, String>> labelsY = new ArrayList<Pair<Float, String>>();
+        private GraphView view;
+        private boolean geometryValid;
+        private int width;
+        private int height;
+        private float pxProX;
+        private float pxProY;
+        private double minX;
+        private double maxX;
+        private double maxY;
+        private boolean viewportXFixed;
+        private double viewportMinX;
+        private double viewportMaxX;
+        private float textHeight;
+        private float labelPlacePX;
+        private float marginPX;
+        private boolean updateMissed;
+
+        @Override
+        public void update(Observable observable, Object data) {
+            if (view != null) {
+                view.update(observable, data);
+            } else {
+                updateMissed = true;
+            }
+        }
+    }
+
+    private static class Plot {
         PointsProvider provider;
         PlotStyle style;
         Path path = new Path();
         Path fillPath = new Path();
-        List<Pair<Float, Float>> pointsPX = Collections.EMPTY_LIST;
+        List<Point> points;
+        float[] pointsPX = new float[0];
+        int pointsCount;
+        float[] barsPX = new float[0];
+        float barWidthPX;
+        int stride = 1;
+        Bitmap densityBitmap;
+        // Projection being built: at once on a layout, or in slices while refining.
+        // Once taken, the buffer keeps the previous projection to find what changed
+        float[] pendingPX = new float[0];
+        int pendingCount;
+        Path pendingPath = new Path();
+        int pendingStride;
+        int pendingFrom;
+        int pendingTo;
+        int pendingLastBlockSize;
+        int pendingCursor;
+        int pendingIndex;
+        boolean pendingByBlocks;
+        boolean pendingProjected;
+        int pendingGeometryCursor;
+        Iterator<Point> pendingIterator;
+        int previousCount;
+        float previousBarWidthPX;
+        // View size and number of points at the last full layout
+        int layoutWidth;
+        int layoutHeight;
+        int layoutSize;
+        boolean sortedX;
 
         Plot(PointsProvider provider, PlotStyle style) {
             this.provider = provider;
             this.style = style;
         }
+
+        /**
+         * @return pending buffer for (x, y) pairs of at least the given number of points
+         */
+        float[] obtainPendingPX(int count) {
+            if (pendingPX.length < count * 2) {
+                pendingPX = new float[count * 2];
+            }
+            return pendingPX;
+        }
+
+        /**
+         * @return buffer for (x0, y0, x1, y1) lines of at least the given number of bars
+         */
+        float[] obtainBarsPX(int count) {
+            if (barsPX.length < count * 4) {
+                barsPX = new float[count * 4];
+            }
+            return barsPX;
+        }
+    }
+
+    /**
+     * Accumulates X-range, max Y and X-order of points of a plot
+     */
+    private static class PlotBounds {
+        double minX;
+        double maxX;
+        double maxY;
+        double lastX;
+        boolean sortedX;
+
+        void reset() {
+            minX = Double.MAX_VALUE;
+            maxX = -Double.MAX_VALUE;
+            maxY = -Double.MAX_VALUE;
+            lastX = -Double.MAX_VALUE;
+            sortedX = true;
+        }
+
+        void include(double x, double y) {
+            if (x < lastX) {
+                sortedX = false;
+            }
+            lastX = x;
+            if (minX > x) {
+                minX = x;
+            }
+            if (maxX < x) {
+                maxX = x;
+            }
+            if (maxY < y) {
+                maxY = y;
+            }
+        }
+    }
+
+    /**
+     * Key of formatted label in cache: tick value and the step it was produced with
+     */
+    private static class LabelKey {
+        double value;
+        double step;
+
+        LabelKey() {
+        }
+
+        LabelKey(double value, double step) {
+            set(value, step);
+        }
+
+        void set(double value, double step) {
+            this.value = value;
+            this.step = step;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LabelKey)) {
+                return false;
+            }
+            LabelKey other = (LabelKey) o;
+            return Double.compare(value, other.value) == 0
+                    && Double.compare(step, other.step) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(value) * 31 + Double.doubleToLongBits(step);
+            return (int) (bits ^ (bits >>> 32));
+        }
     }
 
     private class ComparatorScaleStepX implements Comparator<Plot> {
@@ -6,19 +6,26 @@ import android.graphics.drawable.Drawable;
 
 /**
  * Contains colors for lines, fill area; gives you ability to set or reset filling for plot
- * Default style: without points; with fill (transparent black) below plot; black plot;
+ * Default style: line plot; without points; with fill (transparent black) below plot; black plot;
  */
 public class PlotStyle {
     private static final int DEFAULT_LINE_COLOR = Color.BLACK;
     private static final int DEFAULT_FILL_COLOR = 0x44000000;
+    private static final float DEFAULT_POINT_SIZE_PX = 4f;
+    private Type type;
     private Paint linePaint;
     private boolean enableFill;
     private Paint fillPaint;
+    private Paint pointPaint;
+    private Paint barPaint;
+    private float barWidth;
     private Drawable pointDrawable;
 
     public PlotStyle() {
+        type = Type.LINE;
         pointDrawable = null;
         enableFill = true;
+        barWidth = 0;
 
         linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         linePaint.setStyle(Paint.Style.STROKE);
@@ -27,20 +34,69 @@ public class PlotStyle {
         fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         fillPaint.setStyle(Paint.Style.FILL);
         fillPaint.setColor(DEFAULT_FILL_COLOR);
+
+        pointPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        pointPaint.setStyle(Paint.Style.STROKE);
+        pointPaint.setStrokeCap(Paint.Cap.ROUND);
+        pointPaint.setStrokeWidth(DEFAULT_POINT_SIZE_PX);
+        pointPaint.setColor(DEFAULT_LINE_COLOR);
+
+        barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        barPaint.setStyle(Paint.Style.STROKE);
+        barPaint.setStrokeCap(Paint.Cap.BUTT);
+        barPaint.setColor(DEFAULT_FILL_COLOR);
     }
 
     /**
-     * @param lineColor - the color for lines, that connects points of plot
+     * @return the way points of plot are drawn
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @param type - the way points of plot are drawn, {@link Type#LINE} by default
+     */
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * @param lineColor - the color for lines, that connects points of plot,
+     *                  and for points of scatter plot
      */
     public void setLineColor(int lineColor) {
         linePaint.setColor(lineColor);
+        pointPaint.setColor(lineColor);
     }
 
     /**
-     * @param fillColor - the color of area below the plot
+     * @param fillColor - the color of area below the plot and of bars
      */
     public void setFillColor(int fillColor) {
         fillPaint.setColor(fillColor);
+        barPaint.setColor(fillColor);
+    }
+
+    /**
+     * @param pointSize - the diameter in pixels of points of scatter plot
+     */
+    public void setPointSize(float pointSize) {
+        pointPaint.setStrokeWidth(pointSize);
+    }
+
+    /**
+     * @return the width of bars in pixels; 0 means the width is fitted to the number of bars
+     */
+    public float getBarWidth() {
+        return barWidth;
+    }
+
+    /**
+     * @param barWidth - the width of bars in pixels; 0 to fit it to the number of bars
+     */
+    public void setBarWidth(float barWidth) {
+        this.barWidth = barWidth;
     }
 
     /**
@@ -57,6 +113,20 @@ public class PlotStyle {
         return fillPaint;
     }
 
+    /**
+     * @return a Paint to draw points of scatter plot
+     */
+    public Paint getPointPaint() {
+        return pointPaint;
+    }
+
+    /**
+     * @return a Paint to draw bars, its stroke width is set by GraphView
+     */
+    public Paint getBarPaint() {
+        return barPaint;
+    }
+
     /**
      * @return true if area below the plot should be filled and false otherwise
      */
@@ -85,5 +155,32 @@ public class PlotStyle {
     public void setPointDrawable(Drawable pointDrawable) {
         this.pointDrawable = pointDrawable;
     }
+
+    /**
+     * The way points of plot are drawn
+     */
+    public enum Type {
+        /**
+         * Points connected with straight lines, with optional fill below
+         */
+        LINE,
+        /**
+         * Points connected with horizontal-then-vertical steps, with optional fill below
+         */
+        STEP,
+        /**
+         * Unconnected points, drawn in one call
+         */
+        SCATTER,
+        /**
+         * Vertical bars from X-axis to points, drawn in one call
+         */
+        BAR,
+        /**
+         * Number of points per pixel, drawn as one bitmap in the line color with opacity
+         * growing with density; for millions of overlapping points
+         */
+        DENSITY
+    }
 }
 
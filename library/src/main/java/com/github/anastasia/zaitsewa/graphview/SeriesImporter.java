@@ -0,0 +1,393 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Streams points from CSV or binary files into a {@link ConcurrentPointsProvider}
+ * on a background thread. Points are appended in chunks, so a GraphView observing
+ * the provider grows the plot while the file loads.
+ * <p/>
+ * CSV: one point per line, X and Y in the first two fields separated by comma, semicolon
+ * or tab; empty lines and lines starting with '#' are skipped, as is one header line
+ * before the data.
+ * Numbers with up to 15 significant digits are parsed without allocations.
+ * <p/>
+ * Binary: {@link #BINARY_MAGIC} followed by big-endian (double x, double y) pairs,
+ * as written by {@link #writeBinary(java.util.List, java.io.OutputStream)}
+ */
+public class SeriesImporter {
+
+    public static final int BINARY_MAGIC = 0x47565331;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int CHUNK_POINTS = 4096;
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "SeriesImporter");
+                }
+            }
+    );
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Import CSV file in background
+     *
+     * @param listener - notified on the main thread, can be null
+     */
+    public Future<?> importCsv(File file, ConcurrentPointsProvider target, Listener listener) {
+        return submit(file, target, false, listener);
+    }
+
+    /**
+     * Import binary file in background
+     *
+     * @param listener - notified on the main thread, can be null
+     */
+    public Future<?> importBinary(File file, ConcurrentPointsProvider target, Listener listener) {
+        return submit(file, target, true, listener);
+    }
+
+    /**
+     * Stop the background thread once already submitted files are imported
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Future<?> submit(final File file, final ConcurrentPointsProvider target,
+                             final boolean binary, final Listener listener) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    FileInputStream input = new FileInputStream(file);
+                    long count;
+                    try {
+                        count = binary
+                                ? readBinary(input.getChannel(), target)
+                                : readCsv(input.getChannel(), target);
+                    } finally {
+                        input.close();
+                    }
+                    onComplete(listener, count);
+                } catch (IOException e) {
+                    onError(listener, e);
+                }
+            }
+        });
+    }
+
+    private void onComplete(final Listener listener, final long count) {
+        if (listener != null) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onComplete(count);
+                }
+            });
+        }
+    }
+
+    private void onError(final Listener listener, final IOException e) {
+        if (listener != null) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onError(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Read CSV points from the channel on the calling thread, appending them in chunks
+     *
+     * @return number of imported points
+     */
+    public static long readCsv(ReadableByteChannel channel, ConcurrentPointsProvider target)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CsvParser parser = new CsvParser();
+        Chunk chunk = new Chunk(target);
+        boolean eof = false;
+
+        while (!eof) {
+            eof = channel.read(buffer) < 0;
+            buffer.flip();
+            int lineStart = buffer.position();
+            for (int i = lineStart; i < buffer.limit(); i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    parser.parseLine(buffer, lineStart, i, chunk);
+                    lineStart = i + 1;
+                }
+            }
+            if (eof) {
+                parser.parseLine(buffer, lineStart, buffer.limit(), chunk);
+            } else if (lineStart == 0 && buffer.limit() == buffer.capacity()) {
+                throw new IOException(
+                        "Line " + (parser.line + 1) + " is longer than " + BUFFER_SIZE + " bytes"
+                );
+            }
+            buffer.position(lineStart);
+            buffer.compact();
+        }
+        return chunk.flush();
+    }
+
+    /**
+     * Read binary points from the channel on the calling thread, appending them in chunks
+     *
+     * @return number of imported points
+     */
+    public static long readBinary(ReadableByteChannel channel, ConcurrentPointsProvider target)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        Chunk chunk = new Chunk(target);
+        boolean magicRead = false;
+        boolean eof = false;
+
+        while (!eof) {
+            eof = channel.read(buffer) < 0;
+            buffer.flip();
+            if (!magicRead && buffer.remaining() >= 4) {
+                int magic = buffer.getInt();
+                if (magic != BINARY_MAGIC) {
+                    throw new IOException("Not a series file, magic " + Integer.toHexString(magic));
+                }
+                magicRead = true;
+            }
+            if (magicRead) {
+                while (buffer.remaining() >= 16) {
+                    chunk.add(buffer.getDouble(), buffer.getDouble());
+                }
+            }
+            if (eof && magicRead && buffer.hasRemaining()) {
+                throw new IOException("Truncated series file, " + buffer.remaining()
+                        + " bytes left after " + chunk.total + " points");
+            }
+            buffer.compact();
+        }
+        if (!magicRead) {
+            throw new IOException("Not a series file, too short");
+        }
+        return chunk.flush();
+    }
+
+    /**
+     * Write points in the binary format; the stream is not closed
+     */
+    public static void writeBinary(List<Point> points, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(BINARY_MAGIC);
+        for (Point point : points) {
+            data.writeDouble(point.getX());
+            data.writeDouble(point.getY());
+        }
+        data.flush();
+    }
+
+    /**
+     * Callbacks of background import, called on the main thread
+     */
+    public interface Listener {
+
+        /**
+         * @param count - number of imported points
+         */
+        void onComplete(long count);
+
+        void onError(IOException e);
+    }
+
+    /**
+     * Points collected for the next append
+     */
+    private static class Chunk {
+        final ConcurrentPointsProvider target;
+        final double[] xs = new double[CHUNK_POINTS];
+        final double[] ys = new double[CHUNK_POINTS];
+        int count;
+        long total;
+
+        Chunk(ConcurrentPointsProvider target) {
+            this.target = target;
+        }
+
+        void add(double x, double y) {
+            xs[count] = x;
+            ys[count] = y;
+            count++;
+            if (count == CHUNK_POINTS) {
+                flush();
+            }
+        }
+
+        long flush() {
+            if (count > 0) {
+                target.append(xs, ys, count);
+                total += count;
+                count = 0;
+            }
+            return total;
+        }
+    }
+
+    private static class CsvParser {
+        int line;
+        int parsedLines;
+        boolean headerSkipped;
+        // Result of parseNumber: value and index after the number, or -1 if it is not a number
+        double value;
+        int end;
+
+        void parseLine(ByteBuffer buffer, int start, int end, Chunk chunk) throws IOException {
+            line++;
+            while (end > start && (buffer.get(end - 1) == '\r' || buffer.get(end - 1) == ' ')) {
+                end--;
+            }
+            start = skipSpaces(buffer, start, end);
+            if (start == end || buffer.get(start) == '#') {
+                return;
+            }
+
+            boolean valid = parseNumber(buffer, start, end);
+            double x = value;
+            int i = skipSpaces(buffer, this.end, end);
+            valid &= i < end && isSeparator(buffer.get(i));
+            valid = valid && parseNumber(buffer, skipSpaces(buffer, i + 1, end), end);
+            if (valid) {
+                i = skipSpaces(buffer, this.end, end);
+                valid = i == end || isSeparator(buffer.get(i));
+            }
+
+            if (valid) {
+                chunk.add(x, value);
+                parsedLines++;
+            } else if (parsedLines > 0 || headerSkipped) {
+                throw new IOException("Malformed line " + line);
+            } else {
+                headerSkipped = true;
+            }
+        }
+
+        private static boolean isSeparator(byte b) {
+            return b == ',' || b == ';' || b == '\t';
+        }
+
+        private static int skipSpaces(ByteBuffer buffer, int i, int end) {
+            while (i < end && buffer.get(i) == ' ') {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Parse a decimal number, putting it to value and the index after it to end
+         *
+         * @return false if there is no number at start
+         */
+        boolean parseNumber(ByteBuffer buffer, int start, int end) {
+            int i = start;
+            boolean negative = false;
+            if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+                negative = buffer.get(i) == '-';
+                i++;
+            }
+
+            long mantissa = 0;
+            int digits = 0;
+            int significant = 0;
+            int exponent = 0;
+            boolean fraction = false;
+            for (; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b >= '0' && b <= '9') {
+                    digits++;
+                    if (significant > 0 || b != '0') {
+                        significant++;
+                    }
+                    if (significant <= MAX_FAST_DIGITS) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (fraction) {
+                            exponent--;
+                        }
+                    } else if (!fraction) {
+                        exponent++;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (digits == 0) {
+                return false;
+            }
+
+            if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+                int j = i + 1;
+                boolean negativeExponent = false;
+                if (j < end && (buffer.get(j) == '-' || buffer.get(j) == '+')) {
+                    negativeExponent = buffer.get(j) == '-';
+                    j++;
+                }
+                int exponentDigits = 0;
+                int explicitExponent = 0;
+                for (; j < end && buffer.get(j) >= '0' && buffer.get(j) <= '9'; j++) {
+                    if (explicitExponent < 10000) {
+                        explicitExponent = explicitExponent * 10 + (buffer.get(j) - '0');
+                    }
+                    exponentDigits++;
+                }
+                if (exponentDigits == 0) {
+                    return false;
+                }
+                exponent += negativeExponent ? -explicitExponent : explicitExponent;
+                i = j;
+            }
+            this.end = i;
+
+            if (significant <= MAX_FAST_DIGITS && Math.abs(exponent) < POWERS_OF_TEN.length) {
+                // Both operands are exact, so the result is correctly rounded
+                double result = exponent >= 0
+                        ? mantissa * POWERS_OF_TEN[exponent]
+                        : mantissa / POWERS_OF_TEN[-exponent];
+                value = negative ? -result : result;
+            } else {
+                byte[] bytes = new byte[i - start];
+                for (int k = 0; k < bytes.length; k++) {
+                    bytes[k] = buffer.get(start + k);
+                }
+                value = Double.parseDouble(new String(bytes, ASCII));
+            }
+            return true;
+        }
+    }
+}
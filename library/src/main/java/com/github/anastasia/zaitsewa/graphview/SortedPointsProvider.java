@@ -0,0 +1,12 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+/**
+ * Marker for a {@link com.github.anastasia.zaitsewa.graphview.PointsProvider}
+ * whose points are always sorted by X ascending.
+ * GraphView detects the order of points itself; implementing this interface
+ * lets it rely on the order without checking it: for a {@link java.util.RandomAccess}
+ * list of points the X-range is taken from the first and the last points
+ * and max Y from the visible points only, instead of walking the whole series
+ */
+public interface SortedPointsProvider extends PointsProvider {
+}
@@ -0,0 +1,183 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CompressedSeriesTest {
+
+    @Test
+    public void roundTripAcrossBlockBoundaries() {
+        CompressedSeries series = new CompressedSeries(4);
+        long[] xs = new long[10];
+        double[] ys = new double[10];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 1000L * i + (i % 3);
+            ys[i] = Math.sin(i);
+            series.append(xs[i], ys[i]);
+        }
+
+        assertEquals(10, series.size());
+        assertEquals(3, series.getBlockCount());
+        assertEquals(4, series.getBlockSize(0));
+        assertEquals(4, series.getBlockSize(1));
+        assertEquals(2, series.getBlockSize(2));
+        assertEquals(xs[4], series.getBlockFirstX(1));
+        assertEquals(ys[8], series.getBlockFirstY(2), 0);
+        assertEquals(xs[7], series.getBlockMaxX(1));
+        assertTrue(series.isSortedX());
+        assertEquals(xs[0], series.getMinX());
+        assertEquals(xs[9], series.getMaxX());
+
+        assertSeries(series, xs, ys);
+    }
+
+    @Test
+    public void roundTripOfEveryDeltaOfDeltaRange() {
+        long[] dods = {
+                0, 1, -1, 63, -64, 64, -65, 255, -256, 256, -257,
+                2047, -2048, 2048, -2049, 1L << 40, -(1L << 40)
+        };
+        CompressedSeries series = new CompressedSeries(CompressedSeries.DEFAULT_BLOCK_SIZE);
+        long[] xs = new long[dods.length + 2];
+        double[] ys = new double[xs.length];
+        long delta = 1000;
+        xs[0] = 1420070400000L;
+        xs[1] = xs[0] + delta;
+        for (int i = 0; i < dods.length; i++) {
+            delta += dods[i];
+            xs[i + 2] = xs[i + 1] + delta;
+        }
+        for (int i = 0; i < xs.length; i++) {
+            ys[i] = i;
+            series.append(xs[i], ys[i]);
+        }
+
+        assertEquals(1, series.getBlockCount());
+        assertTrue(series.isSortedX());
+        assertSeries(series, xs, ys);
+    }
+
+    @Test
+    public void xorReusesPreviousWindow() {
+        long base = Double.doubleToRawLongBits(1.0);
+        int[] meaningful = {0, 7, 2, 5, 0};
+        CompressedSeries series = new CompressedSeries(CompressedSeries.DEFAULT_BLOCK_SIZE);
+        long[] xs = new long[meaningful.length];
+        double[] ys = new double[meaningful.length];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 10L * i;
+            ys[i] = Double.longBitsToDouble(base ^ ((long) meaningful[i] << 20));
+            series.append(xs[i], ys[i]);
+        }
+
+        // Second point: delta-of-delta 10 ('10' + 7 bits) and a new 3-bit XOR window
+        // ('11' + 6 + 6 + 3 bits); every next point: delta-of-delta 0 ('0')
+        // and a XOR fitting into the previous window ('10' + 3 bits)
+        int bits = (9 + 17) + 3 * (1 + 5);
+        assertEquals((bits + 7) / 8, series.getEncodedBytes());
+        assertSeries(series, xs, ys);
+    }
+
+    @Test
+    public void keepsBitsOfSpecialValues() {
+        double[] ys = {
+                Double.NaN,
+                Double.longBitsToDouble(0x7ff8000000000001L),
+                Double.longBitsToDouble(0xfff8000000000000L),
+                Double.longBitsToDouble(0x7ff0000000000001L),
+                -0.0, 0.0,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, -Double.MAX_VALUE, Double.NaN
+        };
+        CompressedSeries series = new CompressedSeries(4);
+        long[] xs = new long[ys.length];
+        for (int i = 0; i < ys.length; i++) {
+            xs[i] = i;
+            series.append(xs[i], ys[i]);
+        }
+
+        assertSeries(series, xs, ys);
+    }
+
+    @Test
+    public void decodesFromSeveralThreads() throws Exception {
+        Random random = new Random(31);
+        final CompressedSeries series = new CompressedSeries(64);
+        final long[] xs = new long[20000];
+        final double[] ys = new double[xs.length];
+        long x = 0;
+        double y = 0;
+        for (int i = 0; i < xs.length; i++) {
+            x += 1 + random.nextInt(100);
+            y += random.nextGaussian();
+            xs[i] = x;
+            ys[i] = y;
+            series.append(x, y);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        double[] blockXs = new double[series.getBlockCapacity()];
+                        double[] blockYs = new double[series.getBlockCapacity()];
+                        for (int pass = 0; pass < 20; pass++) {
+                            int index = 0;
+                            for (int b = 0; b < series.getBlockCount(); b++) {
+                                int count = series.decodeBlock(b, blockXs, blockYs);
+                                for (int i = 0; i < count; i++, index++) {
+                                    if (blockXs[i] != xs[index] || blockYs[i] != ys[index]) {
+                                        return false;
+                                    }
+                                }
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertSeries(CompressedSeries series, long[] xs, double[] ys) {
+        double[] blockXs = new double[series.getBlockCapacity()];
+        double[] blockYs = new double[series.getBlockCapacity()];
+        int index = 0;
+        for (int b = 0; b < series.getBlockCount(); b++) {
+            int count = series.decodeBlock(b, blockXs, blockYs);
+            for (int i = 0; i < count; i++, index++) {
+                assertEquals("x at " + index, xs[index], (long) blockXs[i]);
+                assertEquals("y bits at " + index,
+                        Double.doubleToRawLongBits(ys[index]),
+                        Double.doubleToRawLongBits(blockYs[i]));
+            }
+        }
+        assertEquals(xs.length, index);
+
+        List<Point> points = series.asList();
+        assertEquals(xs.length, points.size());
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(xs[i], (long) points.get(i).getX());
+            assertEquals(Double.doubleToRawLongBits(ys[i]),
+                    Double.doubleToRawLongBits(points.get(i).getY()));
+        }
+    }
+}
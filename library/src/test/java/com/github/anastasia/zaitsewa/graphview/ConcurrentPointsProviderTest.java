@@ -0,0 +1,263 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Observable;
+import java.util.Observer;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, manifest = Config.NONE)
+public class ConcurrentPointsProviderTest {
+
+    @Test
+    public void snapshotKeepsPointsPublishedBeforeIt() {
+        TestProvider provider = new TestProvider(100);
+        for (int i = 0; i < 10; i++) {
+            provider.append(i, -i);
+        }
+        ConcurrentPointsProvider.Snapshot snapshot = provider.getPoints();
+        for (int i = 10; i < 50; i++) {
+            provider.append(i, -i);
+        }
+
+        assertSequence(snapshot, 0, 10);
+        assertSequence(provider.getPoints(), 0, 50);
+        assertEquals(3, snapshot.get(3).getX(), 0);
+        assertEquals(-3, snapshot.get(3).getY(), 0);
+    }
+
+    @Test
+    public void appendsArraysAtOnce() {
+        TestProvider provider = new TestProvider(5000);
+        double[] xs = new double[3000];
+        double[] ys = new double[3000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i;
+            ys[i] = -i;
+        }
+        provider.append(xs, ys, 2500);
+
+        assertSequence(provider.getPoints(), 0, 2500);
+    }
+
+    @Test
+    public void dropsOldestPointsBeyondCapacity() {
+        TestProvider provider = new TestProvider(3000);
+        ConcurrentPointsProvider.Snapshot early = null;
+        for (int i = 0; i < 10000; i++) {
+            provider.append(i, -i);
+            if (i == 2499) {
+                early = provider.getPoints();
+            }
+        }
+
+        assertSequence(provider.getPoints(), 7000, 3000);
+        // Chunks dropped from the provider are still readable through old snapshots
+        assertSequence(early, 0, 2500);
+    }
+
+    @Test
+    public void keepsCapacityOfOneChunkBoundary() {
+        TestProvider provider = new TestProvider(1024);
+        for (int i = 0; i < 1024 * 5 + 1; i++) {
+            provider.append(i, -i);
+            ConcurrentPointsProvider.Snapshot snapshot = provider.getPoints();
+            assertEquals(Math.min(i + 1, 1024), snapshot.size());
+            assertEquals(i, snapshot.getX(snapshot.size() - 1), 0);
+        }
+        assertSequence(provider.getPoints(), 1024 * 4 + 1, 1024);
+    }
+
+    @Test
+    public void clearRemovesPublishedPoints() {
+        TestProvider provider = new TestProvider(3000);
+        for (int i = 0; i < 5000; i++) {
+            provider.append(i, -i);
+        }
+        ConcurrentPointsProvider.Snapshot beforeClear = provider.getPoints();
+        provider.clear();
+
+        assertEquals(0, provider.getPoints().size());
+        assertSequence(beforeClear, 2000, 3000);
+
+        for (int i = 5000; i < 5010; i++) {
+            provider.append(i, -i);
+        }
+        assertSequence(provider.getPoints(), 5000, 10);
+
+        for (int i = 5010; i < 12000; i++) {
+            provider.append(i, -i);
+        }
+        assertSequence(provider.getPoints(), 9000, 3000);
+    }
+
+    @Test
+    public void notifiesObserversOnceForAppendsWithinInterval() {
+        TestProvider provider = new TestProvider(100);
+        final int[] notifications = new int[1];
+        provider.addObserver(new Observer() {
+            @Override
+            public void update(Observable observable, Object data) {
+                notifications[0]++;
+            }
+        });
+        assertEquals(1, notifications[0]);
+
+        for (int i = 0; i < 10; i++) {
+            provider.append(i, -i);
+        }
+        Robolectric.runUiThreadTasksIncludingDelayedTasks();
+
+        assertEquals(2, notifications[0]);
+    }
+
+    @Test
+    public void snapshotsAreConsistentWhileProducerAppends() throws Exception {
+        final int capacity = 10000;
+        final int total = 1000000;
+        final TestProvider provider = new TestProvider(capacity);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    double[] xs = new double[7];
+                    double[] ys = new double[7];
+                    for (int i = 0; i < total; ) {
+                        if (i % 3 == 0) {
+                            provider.append(i, -i);
+                            i++;
+                        } else {
+                            int count = Math.min(xs.length, total - i);
+                            for (int j = 0; j < count; j++) {
+                                xs[j] = i + j;
+                                ys[j] = -(i + j);
+                            }
+                            provider.append(xs, ys, count);
+                            i += count;
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        producer.start();
+
+        double lastEnd = -1;
+        int snapshots = 0;
+        while (producer.isAlive() || snapshots == 0) {
+            ConcurrentPointsProvider.Snapshot snapshot = provider.getPoints();
+            int size = snapshot.size();
+            assertTrue("size " + size, size <= capacity);
+            if (size == 0) {
+                continue;
+            }
+            double first = snapshot.getX(0);
+            double end = snapshot.getX(size - 1);
+            assertTrue("published points went back from " + lastEnd + " to " + end,
+                    end >= lastEnd);
+            assertTrue(size == capacity || first == 0);
+            assertSequence(snapshot, (int) first, size);
+            lastEnd = end;
+            snapshots++;
+        }
+        producer.join();
+
+        assertNull(failure.get());
+        assertSequence(provider.getPoints(), total - capacity, capacity);
+    }
+
+    @Test
+    public void snapshotsKeepCapacityWhileProducerAppendsChunks() throws Exception {
+        // Capacity of whole chunks, appends crossing chunk boundaries
+        final int capacity = 2048;
+        final int total = 1000000;
+        final TestProvider provider = new TestProvider(capacity);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    double[] xs = new double[1500];
+                    double[] ys = new double[1500];
+                    for (int i = 0; i < total; i += xs.length) {
+                        int count = Math.min(xs.length, total - i);
+                        for (int j = 0; j < count; j++) {
+                            xs[j] = i + j;
+                            ys[j] = -(i + j);
+                        }
+                        provider.append(xs, ys, count);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        producer.start();
+
+        while (producer.isAlive()) {
+            ConcurrentPointsProvider.Snapshot snapshot = provider.getPoints();
+            int size = snapshot.size();
+            if (size > 0 && snapshot.getX(0) > 0) {
+                assertEquals(capacity, size);
+                assertSequence(snapshot, (int) snapshot.getX(0), size);
+            }
+        }
+        producer.join();
+
+        assertNull(failure.get());
+        assertSequence(provider.getPoints(), total - capacity, capacity);
+    }
+
+    /**
+     * Assert the snapshot holds points (x, -x) for x = first, first + 1, ...
+     */
+    private static void assertSequence(ConcurrentPointsProvider.Snapshot snapshot,
+                                       int first, int size) {
+        assertEquals(size, snapshot.size());
+        for (int i = 0; i < size; i++) {
+            double x = snapshot.getX(i);
+            if (x != first + i || snapshot.getY(i) != -x) {
+                assertEquals("x at " + i, first + i, x, 0);
+                assertEquals("y at " + i, -x, snapshot.getY(i), 0);
+            }
+        }
+    }
+
+    static class TestProvider extends ConcurrentPointsProvider {
+
+        TestProvider(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public String getLabelX(double x) {
+            return String.valueOf(x);
+        }
+
+        @Override
+        public String getLabelY(double y) {
+            return String.valueOf(y);
+        }
+
+        @Override
+        public double getScaleStepX() {
+            return 1;
+        }
+
+        @Override
+        public double getScaleStepY() {
+            return 1;
+        }
+    }
+}
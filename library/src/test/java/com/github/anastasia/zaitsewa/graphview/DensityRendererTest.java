@@ -0,0 +1,157 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, manifest = Config.NONE)
+public class DensityRendererTest {
+
+    private static final int WIDTH = 301;
+    private static final int HEIGHT = 203;
+    private static final int COLOR = 0xFF3366CC;
+
+    @Test
+    public void binsEveryPointOnceInParallel() {
+        float[] pointsPX = randomPoints(200000);
+        int[] histogram = histogram(pointsPX, 200000);
+
+        for (int threads = 1; threads <= 4; threads++) {
+            DensityRenderer renderer = new DensityRenderer(threads);
+            renderer.render(pointsPX, 200000, WIDTH, HEIGHT, COLOR, null);
+            assertColours(renderer, histogram);
+        }
+    }
+
+    @Test
+    public void scratchIsClearedBetweenPlots() {
+        DensityRenderer renderer = new DensityRenderer(3);
+        float[] manyPX = randomPoints(100000);
+        renderer.render(manyPX, 100000, WIDTH, HEIGHT, COLOR, null);
+
+        float[] fewPX = randomPoints(100);
+        renderer.render(fewPX, 100, WIDTH, HEIGHT, COLOR, null);
+        assertColours(renderer, histogram(fewPX, 100));
+
+        // Smaller view after a larger one reuses the larger scratch
+        renderer.render(manyPX, 100000, WIDTH / 2, HEIGHT / 2, COLOR, null);
+        float[] inside = new float[manyPX.length];
+        int count = 0;
+        for (int i = 0; i < manyPX.length; i += 2) {
+            if (manyPX[i] < WIDTH / 2 && manyPX[i + 1] < HEIGHT / 2) {
+                inside[count * 2] = manyPX[i];
+                inside[count * 2 + 1] = manyPX[i + 1];
+                count++;
+            }
+        }
+        int[] histogram = histogram(inside, count);
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                assertEquals(histogram[y * WIDTH + x] == 0,
+                        renderer.getPixel(x, y) == Color.TRANSPARENT);
+            }
+        }
+    }
+
+    @Test
+    public void reusesBitmapOfSameSize() {
+        DensityRenderer renderer = new DensityRenderer();
+        float[] pointsPX = randomPoints(1000);
+        Bitmap bitmap = renderer.render(pointsPX, 1000, WIDTH, HEIGHT, COLOR, null);
+
+        assertSame(bitmap, renderer.render(pointsPX, 1000, WIDTH, HEIGHT, COLOR, bitmap));
+        Bitmap resized = renderer.render(pointsPX, 1000, WIDTH, HEIGHT + 1, COLOR, bitmap);
+        assertNotSame(bitmap, resized);
+        assertEquals(HEIGHT + 1, resized.getHeight());
+    }
+
+    @Test
+    public void interruptedRenderKeepsPreviousBitmap() {
+        DensityRenderer renderer = new DensityRenderer(2);
+        float[] pointsPX = randomPoints(100000);
+        Bitmap bitmap = renderer.render(pointsPX, 100000, WIDTH, HEIGHT, COLOR, null);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertSame(bitmap,
+                    renderer.render(pointsPX, 100000, WIDTH, HEIGHT + 1, COLOR, bitmap));
+            assertNull(renderer.render(pointsPX, 100000, WIDTH, HEIGHT, COLOR, null));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        renderer.render(pointsPX, 100000, WIDTH, HEIGHT, COLOR, bitmap);
+        assertColours(renderer, histogram(pointsPX, 100000));
+    }
+
+    /**
+     * Assert pixels without points are transparent, the densest pixels have the colour
+     * and denser pixels are never more transparent
+     */
+    private static void assertColours(DensityRenderer renderer, int[] histogram) {
+        int maxCount = 0;
+        for (int count : histogram) {
+            maxCount = Math.max(maxCount, count);
+        }
+        int[] alphas = new int[maxCount + 1];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int count = histogram[y * WIDTH + x];
+                int pixel = renderer.getPixel(x, y);
+                if (count == 0) {
+                    assertEquals(Color.TRANSPARENT, pixel);
+                } else {
+                    assertEquals(COLOR & 0xFFFFFF, pixel & 0xFFFFFF);
+                    alphas[count] = Color.alpha(pixel);
+                }
+            }
+        }
+        assertEquals(Color.alpha(COLOR), alphas[maxCount]);
+        int previous = 0;
+        for (int alpha : alphas) {
+            if (alpha != 0) {
+                assertTrue(alpha >= previous);
+                previous = alpha;
+            }
+        }
+    }
+
+    /**
+     * @return points clustered around the centre, some of them outside the view
+     */
+    private static float[] randomPoints(int count) {
+        Random random = new Random(count);
+        float[] pointsPX = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            pointsPX[i * 2] = (float) (WIDTH / 2 + random.nextGaussian() * WIDTH / 3);
+            pointsPX[i * 2 + 1] = (float) (HEIGHT / 2 + random.nextGaussian() * HEIGHT / 3);
+        }
+        return pointsPX;
+    }
+
+    private static int[] histogram(float[] pointsPX, int count) {
+        int[] histogram = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < count; i++) {
+            int x = (int) pointsPX[i * 2];
+            int y = (int) pointsPX[i * 2 + 1];
+            if (x >= 0 && x < WIDTH && y >= 0 && y < HEIGHT) {
+                histogram[y * WIDTH + x]++;
+            }
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.ShapeDrawable;
+import android.graphics.drawable.shapes.OvalShape;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Headless end-to-end benchmark of the GraphView pipeline
+ * (addPlot -> update -> onSizeChanged -> onDraw).
+ * Run with {@code ./gradlew :library:renderBenchmark}, it is excluded from the unit tests.
+ * <p>
+ * Robolectric's Canvas does not rasterize: draw calls are only recorded, so the numbers
+ * cover what GraphView itself does per frame (bounds, projection, path and bar geometry,
+ * density binning, label layout and the calls issued from onDraw) and the allocations
+ * it makes, but not the cost of filling pixels on a device. Every frame is drawn onto
+ * a fresh Canvas and Bitmap, created outside the measured time, so the recorded call
+ * history does not grow across frames and skew the later ones.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, manifest = Config.NONE)
+public class GraphRenderBenchmark {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 720;
+    private static final int WARMUP_FRAMES = 10;
+    private static final int MEASURED_FRAMES = 50;
+    private static final int STREAMING_APPEND = 16;
+    private static final int MARKER_SIZE_PX = 6;
+    private static final String MAX_P90_PROPERTY = "graphview.benchmark.maxP90Millis";
+
+    private final List<Result> results = new ArrayList<>();
+
+    @Test
+    public void renderWorkloads() {
+        run(new Workload("many plots", 50, 1000).markers(false).fill(false));
+        run(new Workload("many plots, fill", 50, 1000).markers(false).fill(true));
+        run(new Workload("huge plot", 1, 500000).markers(false).fill(false));
+        run(new Workload("huge plot, fill", 1, 500000).markers(false).fill(true));
+        run(new Workload("markers", 4, 5000).markers(true).fill(false));
+        run(new Workload("scatter", 1, 100000).type(PlotStyle.Type.SCATTER));
+        run(new Workload("step, fill", 1, 100000).type(PlotStyle.Type.STEP).fill(true));
+        run(new Workload("bars", 1, 100000).type(PlotStyle.Type.BAR));
+        run(new Workload("density", 20, 100000).type(PlotStyle.Type.DENSITY));
+        run(new Workload("streaming", 2, 20000).markers(false).fill(true).streaming(true));
+
+        System.out.println(String.format(Locale.US,
+                "%-20s %9s %9s %9s %9s %9s %14s",
+                "workload", "first,ms", "p50,ms", "p90,ms", "p99,ms", "max,ms", "alloc/frame,B"));
+        for (Result result : results) {
+            System.out.println(result);
+        }
+
+        String maxP90 = System.getProperty(MAX_P90_PROPERTY);
+        if (maxP90 != null) {
+            double budget = Double.parseDouble(maxP90);
+            for (Result result : results) {
+                assertTrue(result.name + " p90 " + result.p90 + "ms exceeds " + budget + "ms",
+                        result.p90 <= budget);
+            }
+        }
+    }
+
+    private void run(Workload workload) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        long start = System.nanoTime();
+        GraphView graphView = new GraphView(Robolectric.application);
+        List<SyntheticPointsProvider> providers = new ArrayList<>();
+        for (int i = 0; i < workload.plots; i++) {
+            SyntheticPointsProvider provider = new SyntheticPointsProvider(workload.points, i);
+            PlotStyle style = new PlotStyle();
+            style.setType(workload.type);
+            style.fillEnable(workload.fill);
+            if (workload.markers) {
+                ShapeDrawable point = new ShapeDrawable(new OvalShape());
+                point.setIntrinsicWidth(MARKER_SIZE_PX);
+                point.setIntrinsicHeight(MARKER_SIZE_PX);
+                style.setPointDrawable(point);
+            }
+            providers.add(provider);
+            graphView.addPlot(provider, style);
+        }
+        graphView.update(null, null);
+        graphView.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY)
+        );
+        graphView.layout(0, 0, WIDTH, HEIGHT);
+        graphView.draw(newCanvas());
+        double firstFrame = (System.nanoTime() - start) / 1e6;
+
+        double[] frames = new double[MEASURED_FRAMES];
+        long allocated = 0;
+        for (int i = -WARMUP_FRAMES; i < MEASURED_FRAMES; i++) {
+            Canvas canvas = newCanvas();
+            long bytes = allocatedBytes(threads);
+            long frameStart = System.nanoTime();
+            if (workload.streaming) {
+                for (SyntheticPointsProvider provider : providers) {
+                    provider.append(STREAMING_APPEND);
+                }
+            } else {
+                graphView.update(null, null);
+            }
+            graphView.draw(canvas);
+            if (i >= 0) {
+                frames[i] = (System.nanoTime() - frameStart) / 1e6;
+                allocated += allocatedBytes(threads) - bytes;
+            }
+        }
+
+        results.add(new Result(workload.name, firstFrame, frames, allocated / MEASURED_FRAMES));
+    }
+
+    private static Canvas newCanvas() {
+        return new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static class Workload {
+        final String name;
+        final int plots;
+        final int points;
+        boolean markers;
+        boolean fill;
+        boolean streaming;
+        PlotStyle.Type type = PlotStyle.Type.LINE;
+
+        Workload(String name, int plots, int points) {
+            this.name = name;
+            this.plots = plots;
+            this.points = points;
+        }
+
+        Workload markers(boolean markers) {
+            this.markers = markers;
+            return this;
+        }
+
+        Workload fill(boolean fill) {
+            this.fill = fill;
+            return this;
+        }
+
+        Workload streaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        Workload type(PlotStyle.Type type) {
+            this.type = type;
+            return this;
+        }
+    }
+
+    private static class Result {
+        final String name;
+        final double firstFrame;
+        final double p50;
+        final double p90;
+        final double p99;
+        final double max;
+        final long allocatedPerFrame;
+
+        Result(String name, double firstFrame, double[] frames, long allocatedPerFrame) {
+            this.name = name;
+            this.firstFrame = firstFrame;
+            this.allocatedPerFrame = allocatedPerFrame;
+            double[] sorted = frames.clone();
+            Arrays.sort(sorted);
+            p50 = percentile(sorted, 0.50);
+            p90 = percentile(sorted, 0.90);
+            p99 = percentile(sorted, 0.99);
+            max = sorted[sorted.length - 1];
+        }
+
+        private static double percentile(double[] sorted, double p) {
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-20s %9.2f %9.2f %9.2f %9.2f %9.2f %14d",
+                    name, firstFrame, p50, p90, p99, max, allocatedPerFrame);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, manifest = Config.NONE)
+public class GraphViewTest {
+
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 600;
+
+    private GraphView graphView;
+    private SyntheticPointsProvider provider;
+
+    @Before
+    public void setUp() {
+        graphView = new GraphView(Robolectric.application);
+        graphView.setSpacingPXX(0);
+        graphView.setSpacingPXY(0);
+        provider = new SyntheticPointsProvider(1000, 1);
+        graphView.addPlot(provider, new PlotStyle());
+        graphView.update(null, null);
+        layout(graphView, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void labelPlaceChangesScaleOnNextUpdate() {
+        float labelPlacePX = graphView.getLabelPlacePX() + 50;
+        graphView.setLabelPlacePX(labelPlacePX);
+        graphView.update(null, null);
+
+        float[] pointsPX = graphView.getProjectedPoints(0);
+        assertEquals(labelPlacePX, pointsPX[0], 1e-3f);
+        assertEquals(WIDTH, pointsPX[pointsPX.length - 2], 1e-2f);
+    }
+
+    @Test
+    public void spacingChangesLabelsOnNextUpdate() {
+        assertTrue(graphView.getLabelsX().size() > 1);
+        assertTrue(graphView.getLabelsY().size() > 1);
+
+        graphView.setSpacingPXX(WIDTH * 2);
+        graphView.setSpacingPXY(HEIGHT * 2);
+        graphView.update(null, null);
+
+        assertEquals(0, graphView.getLabelsX().size());
+        // Only the label of zero is left
+        assertEquals(1, graphView.getLabelsY().size());
+    }
+
+    @Test
+    public void refinesCoarsePlotInSlicesToAllPoints() {
+        GraphView progressive = new GraphView(Robolectric.application);
+        progressive.setProgressiveRendering(true);
+        SyntheticPointsProvider hugeProvider = new SyntheticPointsProvider(100000, 2);
+        progressive.addPlot(hugeProvider, new PlotStyle());
+        progressive.update(null, null);
+        layout(progressive, WIDTH, HEIGHT);
+        int coarseCount = progressive.getProjectedPoints(0).length / 2;
+        assertTrue(coarseCount < 100000);
+
+        // With no time budget every idle pass does one slice of points,
+        // the coarse projection is drawn until a finer level is complete
+        int passes = 0;
+        int count = coarseCount;
+        while (progressive.refine(0)) {
+            int refinedCount = progressive.getProjectedPoints(0).length / 2;
+            assertTrue(refinedCount >= count);
+            count = refinedCount;
+            passes++;
+        }
+        assertTrue("passes " + passes, passes > 100000 / 1024);
+
+        GraphView complete = new GraphView(Robolectric.application);
+        complete.addPlot(hugeProvider, new PlotStyle());
+        complete.update(null, null);
+        layout(complete, WIDTH, HEIGHT);
+        float[] expected = complete.getProjectedPoints(0);
+        float[] refined = progressive.getProjectedPoints(0);
+        assertEquals(expected.length, refined.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], refined[i], 0);
+        }
+    }
+
+    @Test
+    public void relayoutKeepsRefinedStrideUnlessSizeChanges() {
+        GraphView progressive = new GraphView(Robolectric.application);
+        progressive.setProgressiveRendering(true);
+        SyntheticPointsProvider hugeProvider = new SyntheticPointsProvider(100000, 3);
+        progressive.addPlot(hugeProvider, new PlotStyle());
+        progressive.update(null, null);
+        layout(progressive, WIDTH, HEIGHT);
+        while (progressive.refine(Long.MAX_VALUE)) {
+            // Refine to all points
+        }
+        assertEquals(100000, progressive.getProjectedPoints(0).length / 2);
+
+        // Streaming a few points moves the X-range, the plot stays at full detail
+        hugeProvider.append(10);
+        assertEquals(100010, progressive.getProjectedPoints(0).length / 2);
+
+        // Growth by more than the budget of a coarse frame starts from coarse again
+        hugeProvider.append(WIDTH * 10);
+        assertTrue(progressive.getProjectedPoints(0).length / 2 < 100000);
+        while (progressive.refine(Long.MAX_VALUE)) {
+            // Refine to all points
+        }
+
+        layout(progressive, WIDTH / 2, HEIGHT);
+        assertTrue(progressive.getProjectedPoints(0).length / 2 < 100000);
+    }
+
+    @Test
+    public void coarseCompressedPlotTakesEveryBlockStrideBlockAndLast() {
+        // 1535 blocks of 256 points: stride 768 takes every 3rd block and the last one
+        SeriesPointsProvider series = new SeriesPointsProvider(1535 * 256);
+        GraphView progressive = new GraphView(Robolectric.application);
+        progressive.setProgressiveRendering(true);
+        progressive.addPlot(series, new PlotStyle());
+        progressive.update(null, null);
+        layout(progressive, 200, HEIGHT);
+
+        assertEquals(512 + 1, progressive.getProjectedPoints(0).length / 2);
+        while (progressive.refine(Long.MAX_VALUE)) {
+            // Refine to all points
+        }
+        assertEquals(1535 * 256, progressive.getProjectedPoints(0).length / 2);
+    }
+
+    @Test
+    public void coarseStrideIsBudgetedByVisiblePoints() {
+        GraphView progressive = new GraphView(Robolectric.application);
+        progressive.setProgressiveRendering(true);
+        progressive.addPlot(new ListPointsProvider.Sorted(line(0, 199999, 1), 1000, 1),
+                new PlotStyle());
+        progressive.setViewportX(100000.5, 101997.5);
+        layout(progressive, WIDTH, HEIGHT);
+
+        // 1997 visible points and the margin fit into the budget of two points per pixel
+        assertEquals(1999, progressive.getProjectedPoints(0).length / 2);
+        assertFalse(progressive.refine(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void refineProjectsLastBlockAsItWasAtStart() {
+        // The last block is not full, with the stride of refinement it takes extra points
+        SeriesPointsProvider series = new SeriesPointsProvider(100000);
+        GraphView progressive = new GraphView(Robolectric.application);
+        progressive.setProgressiveRendering(true);
+        progressive.addPlot(series, new PlotStyle());
+        progressive.update(null, null);
+        layout(progressive, WIDTH, HEIGHT);
+        assertTrue(progressive.refine(0));
+
+        // Points appended without a notification, the level in progress ignores them
+        series.append(96);
+        while (progressive.refine(Long.MAX_VALUE)) {
+            // Refine to all points
+        }
+        assertEquals(100096, progressive.getProjectedPoints(0).length / 2);
+    }
+
+    @Test
+    public void detachedViewCatchesUpWithProviderOnAttach() {
+        Robolectric.shadowOf(graphView).callOnAttachedToWindow();
+        Robolectric.shadowOf(graphView).callOnDetachedFromWindow();
+        provider.append(10);
+        assertEquals(1000, graphView.getProjectedPoints(0).length / 2);
+
+        Robolectric.shadowOf(graphView).callOnAttachedToWindow();
+        assertEquals(1010, graphView.getProjectedPoints(0).length / 2);
+        provider.append(10);
+        assertEquals(1020, graphView.getProjectedPoints(0).length / 2);
+    }
+
+    @Test
+    public void retainedStateIsTakenByNewViewOfDetachedView() {
+        Robolectric.shadowOf(graphView).callOnAttachedToWindow();
+        Robolectric.shadowOf(graphView).callOnDetachedFromWindow();
+        provider.append(10);
+
+        GraphView recreated = new GraphView(Robolectric.application);
+        recreated.setSpacingPXX(0);
+        recreated.setSpacingPXY(0);
+        recreated.setRetainedState(graphView.getRetainedState());
+        assertEquals(1010, recreated.getProjectedPoints(0).length / 2);
+        layout(recreated, WIDTH, HEIGHT);
+        provider.append(10);
+        assertEquals(1020, recreated.getProjectedPoints(0).length / 2);
+
+        // The detached view does not take the state back once it is attached to another
+        Robolectric.shadowOf(graphView).callOnAttachedToWindow();
+        provider.append(10);
+        assertEquals(1030, recreated.getProjectedPoints(0).length / 2);
+    }
+
+    @Test
+    public void missedUpdateWithSameBoundsIsProjectedForRetainedSize() {
+        List<Point> points = line(0, 100, 10);
+        points.set(100, new Point(100, 50));
+        ListPointsProvider changing = new ListPointsProvider(points, 10, 10);
+        GraphView detached = viewOf(changing);
+        detached.update(null, null);
+        layout(detached, WIDTH, HEIGHT);
+        Robolectric.shadowOf(detached).callOnAttachedToWindow();
+        Robolectric.shadowOf(detached).callOnDetachedFromWindow();
+
+        // Neither X-range nor max Y changes
+        points.set(50, new Point(50, 30));
+        changing.notifyChanged();
+
+        GraphView recreated = new GraphView(Robolectric.application);
+        recreated.setRetainedState(detached.getRetainedState());
+        layout(recreated, WIDTH, HEIGHT);
+        GraphView expected = viewOf(changing);
+        expected.update(null, null);
+        layout(expected, WIDTH, HEIGHT);
+
+        float[] expectedPX = expected.getProjectedPoints(0);
+        float[] projected = recreated.getProjectedPoints(0);
+        assertEquals(expectedPX.length, projected.length);
+        for (int i = 0; i < expectedPX.length; i++) {
+            assertEquals(expectedPX[i], projected[i], 0);
+        }
+    }
+
+    @Test
+    public void retainedStateIsLaidOutForAttributesOfNewView() {
+        GraphView sameSpacing = new GraphView(Robolectric.application);
+        sameSpacing.setSpacingPXX(0);
+        sameSpacing.setSpacingPXY(0);
+        sameSpacing.setRetainedState(graphView.getRetainedState());
+        layout(sameSpacing, WIDTH, HEIGHT);
+        int labelsCount = sameSpacing.getLabelsX().size();
+        assertTrue(labelsCount > 1);
+
+        // Example: a larger font scale after a configuration change
+        GraphView largerText = new GraphView(Robolectric.application);
+        largerText.setSpacingPXX(WIDTH * 2);
+        largerText.setSpacingPXY(HEIGHT * 2);
+        largerText.setRetainedState(sameSpacing.getRetainedState());
+        layout(largerText, WIDTH, HEIGHT);
+        assertEquals(0, largerText.getLabelsX().size());
+
+        GraphView widerLabels = new GraphView(Robolectric.application);
+        float labelPlacePX = widerLabels.getLabelPlacePX() + 50;
+        widerLabels.setLabelPlacePX(labelPlacePX);
+        widerLabels.setRetainedState(largerText.getRetainedState());
+        layout(widerLabels, WIDTH, HEIGHT);
+        assertEquals(labelPlacePX, widerLabels.getProjectedPoints(0)[0], 1e-3f);
+    }
+
+    @Test
+    public void relayoutWithSameBoundsFormatsNoLabels() {
+        ListPointsProvider labels = new ListPointsProvider(line(0, 200, 50), 10, 10);
+        GraphView view = viewOf(labels);
+        view.setViewportX(0, 100);
+        layout(view, WIDTH, HEIGHT);
+        assertEquals(11, labels.formattedX);
+        assertEquals(6, labels.formattedY);
+
+        layout(view, WIDTH / 2, HEIGHT / 2);
+        view.update(null, null);
+        assertEquals(11, labels.formattedX);
+        assertEquals(6, labels.formattedY);
+    }
+
+    @Test
+    public void panFormatsOnlyTicksEnteringRange() {
+        ListPointsProvider labels = new ListPointsProvider(line(0, 200, 50), 10, 10);
+        GraphView view = viewOf(labels);
+        view.setViewportX(0, 100);
+        layout(view, WIDTH, HEIGHT);
+
+        view.setViewportX(10, 110);
+        assertEquals(12, labels.formattedX);
+        view.setViewportX(15, 115);
+        assertEquals(12, labels.formattedX);
+        view.setViewportX(0, 100);
+        assertEquals(12, labels.formattedX);
+        assertEquals(6, labels.formattedY);
+    }
+
+    @Test
+    public void newLeadProviderFormatsAllLabels() {
+        ListPointsProvider first = new ListPointsProvider(line(0, 100, 50), 10, 10);
+        GraphView view = viewOf(first);
+        view.update(null, null);
+        layout(view, WIDTH, HEIGHT);
+        assertEquals(11, first.formattedX);
+
+        // Labels of the same values are not taken from the cache of another provider
+        ListPointsProvider second = new ListPointsProvider(line(0, 100, 50), 10, 10);
+        List<PointsProvider> providers = new ArrayList<>();
+        providers.add(second);
+        List<PlotStyle> styles = new ArrayList<>();
+        styles.add(new PlotStyle());
+        view.setPlots(providers, styles);
+        view.update(null, null);
+        assertEquals(11, second.formattedX);
+        assertEquals(6, second.formattedY);
+
+        List<PointsProvider> firstAgain = new ArrayList<>();
+        firstAgain.add(first);
+        view.setPlots(firstAgain, styles);
+        view.update(null, null);
+        assertEquals(22, first.formattedX);
+    }
+
+    @Test
+    public void viewportProjectsVisibleSliceWithMargin() {
+        List<Point> points = peak(1000, 500);
+        GraphView culled = viewOf(new ListPointsProvider.Sorted(points, 100, 10));
+        // Not RandomAccess, so every point is projected
+        GraphView full = viewOf(new ListPointsProvider(new LinkedList<>(points), 100, 10));
+        for (GraphView view : new GraphView[]{culled, full}) {
+            layout(view, WIDTH, HEIGHT);
+            view.setViewportX(400.5, 600.5);
+        }
+
+        float[] expected = full.getProjectedPoints(0);
+        float[] projected = culled.getProjectedPoints(0);
+        assertEquals(1000 * 2, expected.length);
+        // Points 401..600 are visible, 400 and 601 are the margin
+        assertEquals(202 * 2, projected.length);
+        for (int i = 0; i < projected.length; i++) {
+            assertEquals(expected[400 * 2 + i], projected[i], 0);
+        }
+        assertTrue(projected[0] < culled.getLabelPlacePX());
+        assertTrue(projected[projected.length - 2] > WIDTH);
+
+        culled.resetViewportX();
+        assertEquals(1000 * 2, culled.getProjectedPoints(0).length);
+    }
+
+    @Test
+    public void viewportOutsideOfPointsProjectsNearestPoint() {
+        List<Point> points = peak(1000, 500);
+        for (int i = 0; i < points.size(); i++) {
+            points.set(i, new Point(points.get(i).getX() + 100, points.get(i).getY()));
+        }
+        GraphView view = viewOf(new ListPointsProvider.Sorted(points, 100, 10));
+        layout(view, WIDTH, HEIGHT);
+
+        view.setViewportX(0, 50);
+        float[] projected = view.getProjectedPoints(0);
+        assertEquals(2, projected.length);
+        assertTrue(projected[0] > WIDTH);
+
+        view.setViewportX(2000, 3000);
+        projected = view.getProjectedPoints(0);
+        assertEquals(2, projected.length);
+        assertTrue(projected[0] < view.getLabelPlacePX());
+
+        view.setViewportX(-1000, 3000);
+        assertEquals(1000 * 2, view.getProjectedPoints(0).length);
+    }
+
+    @Test
+    public void sortedProviderWithoutRandomAccessIsScannedFully() {
+        // The highest point is outside of the viewport
+        List<Point> points = peak(1000, 100);
+        GraphView sequential = viewOf(
+                new ListPointsProvider.Sorted(new LinkedList<>(points), 100, 10)
+        );
+        // Not declared sorted, so max Y is taken over all points
+        GraphView scanned = viewOf(new ListPointsProvider(points, 100, 10));
+        for (GraphView view : new GraphView[]{sequential, scanned}) {
+            layout(view, WIDTH, HEIGHT);
+            view.setViewportX(400.5, 600.5);
+        }
+
+        float[] expected = scanned.getProjectedPoints(0);
+        float[] projected = sequential.getProjectedPoints(0);
+        assertEquals(1000 * 2, projected.length);
+        assertEquals(202 * 2, expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], projected[400 * 2 + i], 0);
+        }
+    }
+
+    /**
+     * @return X-sorted points with X 0..size-1 and the highest Y at the given X
+     */
+    private static List<Point> peak(int size, int peakX) {
+        List<Point> points = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            points.add(new Point(x, 200 - Math.abs(x - peakX) / 10.0 + x % 7));
+        }
+        return points;
+    }
+
+    /**
+     * @return points with X from..to with step 1 and the same Y
+     */
+    static List<Point> line(int from, int to, double y) {
+        List<Point> points = new ArrayList<>();
+        for (int x = from; x <= to; x++) {
+            points.add(new Point(x, y));
+        }
+        return points;
+    }
+
+    private static GraphView viewOf(PointsProvider provider) {
+        GraphView view = new GraphView(Robolectric.application);
+        view.addPlot(provider, new PlotStyle());
+        return view;
+    }
+
+    static void layout(GraphView graphView, int width, int height) {
+        graphView.measure(
+                View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY)
+        );
+        graphView.layout(0, 0, width, height);
+    }
+}
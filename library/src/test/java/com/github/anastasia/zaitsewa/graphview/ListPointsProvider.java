@@ -0,0 +1,98 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+
+/**
+ * Points of the given list with labels formatted in batches, counting formatted labels
+ */
+class ListPointsProvider implements PointsProvider, BatchLabelFormatter {
+
+    private final Observable observable = new PointsObservable();
+    private final List<Point> points;
+    private final double scaleStepX;
+    private final double scaleStepY;
+    int formattedX;
+    int formattedY;
+
+    ListPointsProvider(List<Point> points, double scaleStepX, double scaleStepY) {
+        this.points = points;
+        this.scaleStepX = scaleStepX;
+        this.scaleStepY = scaleStepY;
+    }
+
+    /**
+     * Notify observers that points changed
+     */
+    void notifyChanged() {
+        observable.notifyObservers();
+    }
+
+    @Override
+    public List<Point> getPoints() {
+        return points;
+    }
+
+    @Override
+    public String getLabelX(double x) {
+        formattedX++;
+        return String.valueOf(x);
+    }
+
+    @Override
+    public String getLabelY(double y) {
+        formattedY++;
+        return String.valueOf(y);
+    }
+
+    @Override
+    public void formatLabelsX(double[] values, int count, String[] out) {
+        formattedX += count;
+        for (int i = 0; i < count; i++) {
+            out[i] = String.valueOf(values[i]);
+        }
+    }
+
+    @Override
+    public void formatLabelsY(double[] values, int count, String[] out) {
+        formattedY += count;
+        for (int i = 0; i < count; i++) {
+            out[i] = String.valueOf(values[i]);
+        }
+    }
+
+    @Override
+    public double getScaleStepX() {
+        return scaleStepX;
+    }
+
+    @Override
+    public double getScaleStepY() {
+        return scaleStepY;
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+        observable.addObserver(observer);
+    }
+
+    /**
+     * The same, declaring points sorted by X
+     */
+    static class Sorted extends ListPointsProvider implements SortedPointsProvider {
+
+        Sorted(List<Point> points, double scaleStepX, double scaleStepY) {
+            super(points, scaleStepX, scaleStepY);
+        }
+    }
+
+    private static class PointsObservable extends Observable {
+
+        @Override
+        public void notifyObservers() {
+            setChanged();
+            super.notifyObservers();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(emulateSdk = 18, manifest = Config.NONE)
+public class SeriesImporterTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    @Test
+    public void parsesNumbersAsDoubleParseDouble() throws IOException {
+        Random random = new Random(42);
+        int count = 300000;
+        String[] xs = new String[count];
+        String[] ys = new String[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = randomNumber(random);
+            ys[i] = randomNumber(random);
+        }
+        StringBuilder csv = new StringBuilder("time,value\n");
+        String[] separators = {",", ";", "\t", " , "};
+        for (int i = 0; i < count; i++) {
+            csv.append(xs[i]).append(separators[i % separators.length]).append(ys[i]);
+            csv.append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+
+        ConcurrentPointsProviderTest.TestProvider provider =
+                new ConcurrentPointsProviderTest.TestProvider(count);
+        assertEquals(count, SeriesImporter.readCsv(channel(csv.toString()), provider));
+
+        ConcurrentPointsProvider.Snapshot points = provider.getPoints();
+        assertEquals(count, points.size());
+        for (int i = 0; i < count; i++) {
+            assertBits(xs[i], points.getX(i));
+            assertBits(ys[i], points.getY(i));
+        }
+    }
+
+    @Test
+    public void skipsCommentsEmptyLinesAndOneHeader() throws IOException {
+        String csv = "# exported series\n"
+                + "\n"
+                + "x;y\r\n"
+                + "  # units: s, m\n"
+                + "1;2.5\r\n"
+                + "\r\n"
+                + " 2 ; -3e2 \n"
+                + "3\t4,extra";
+        ConcurrentPointsProviderTest.TestProvider provider =
+                new ConcurrentPointsProviderTest.TestProvider(10);
+
+        assertEquals(3, SeriesImporter.readCsv(channel(csv), provider));
+        ConcurrentPointsProvider.Snapshot points = provider.getPoints();
+        assertEquals(1, points.getX(0), 0);
+        assertEquals(2.5, points.getY(0), 0);
+        assertEquals(2, points.getX(1), 0);
+        assertEquals(-300, points.getY(1), 0);
+        assertEquals(3, points.getX(2), 0);
+        assertEquals(4, points.getY(2), 0);
+    }
+
+    @Test
+    public void rejectsMalformedLineAfterData() {
+        assertCsvFails("x,y\n1,2\n3,oops\n", "Malformed line 3");
+        // Only one header line is skipped
+        assertCsvFails("x,y\nunits,s\n1,2\n", "Malformed line 2");
+        assertCsvFails("1,2\n3 4\n", "Malformed line 2");
+        assertCsvFails("1,2\n3,4e\n", "Malformed line 2");
+    }
+
+    @Test
+    public void rejectsLineLongerThanBuffer() {
+        char[] spaces = new char[70 * 1024];
+        Arrays.fill(spaces, ' ');
+        assertCsvFails("1,2\n3," + new String(spaces) + "4\n", "Line 2 is longer");
+    }
+
+    @Test
+    public void readsWrittenBinary() throws IOException {
+        Random random = new Random(7);
+        List<Point> written = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            written.add(new Point(i, random.nextGaussian()));
+        }
+        written.add(new Point(-0.0, Double.NaN));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SeriesImporter.writeBinary(written, out);
+
+        ConcurrentPointsProviderTest.TestProvider provider =
+                new ConcurrentPointsProviderTest.TestProvider(written.size());
+        assertEquals(written.size(), SeriesImporter.readBinary(
+                Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), provider
+        ));
+        ConcurrentPointsProvider.Snapshot points = provider.getPoints();
+        for (int i = 0; i < written.size(); i++) {
+            assertEquals(Double.doubleToRawLongBits(written.get(i).getX()),
+                    Double.doubleToRawLongBits(points.getX(i)));
+            assertEquals(Double.doubleToRawLongBits(written.get(i).getY()),
+                    Double.doubleToRawLongBits(points.getY(i)));
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedOrForeignBinary() throws IOException {
+        List<Point> written = new ArrayList<>();
+        written.add(new Point(1, 2));
+        written.add(new Point(3, 4));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SeriesImporter.writeBinary(written, out);
+        byte[] bytes = out.toByteArray();
+
+        assertBinaryFails(Arrays.copyOf(bytes, bytes.length - 3), "Truncated series file");
+        assertBinaryFails("time,value\n1,2\n".getBytes(ASCII), "Not a series file");
+        assertBinaryFails(new byte[2], "Not a series file");
+    }
+
+    /**
+     * @return number in one of the forms found in CSV exports
+     */
+    private static String randomNumber(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return String.valueOf(random.nextInt());
+            case 1:
+                return String.format(Locale.US, "%.3f", random.nextGaussian() * 1000);
+            case 2:
+                return String.valueOf(random.nextDouble());
+            case 3:
+                return String.valueOf(random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20));
+            case 4:
+                // Exactly the 15 significant digits of the fast path, and just above it
+                return (random.nextBoolean() ? "-" : "") + (100000000000000L
+                        + (long) (random.nextDouble() * 899999999999999L))
+                        + (random.nextBoolean() ? "" : String.valueOf(random.nextInt(10)))
+                        + "e" + (random.nextInt(50) - 25);
+            case 5:
+                return String.format(Locale.US, "%+.6e", random.nextDouble() * 1e300);
+            case 6:
+                return String.valueOf(Double.longBitsToDouble(random.nextLong() & 0x7fefffffffffffffL));
+            case 7:
+                return "0." + String.format(Locale.US, "%030d", random.nextInt(1000000));
+            case 8:
+                return random.nextBoolean() ? "-0" : "." + random.nextInt(100000);
+            default:
+                return String.valueOf(random.nextInt(100000)) + "." + random.nextInt(100);
+        }
+    }
+
+    private static void assertBits(String number, double parsed) {
+        long expected = Double.doubleToRawLongBits(Double.parseDouble(number));
+        if (expected != Double.doubleToRawLongBits(parsed)) {
+            fail(number + " parsed as " + parsed + ", expected " + Double.parseDouble(number));
+        }
+    }
+
+    private static ReadableByteChannel channel(String csv) {
+        return Channels.newChannel(new ByteArrayInputStream(csv.getBytes(ASCII)));
+    }
+
+    private static void assertCsvFails(String csv, String message) {
+        try {
+            SeriesImporter.readCsv(channel(csv), new ConcurrentPointsProviderTest.TestProvider(10));
+            fail("No error for " + csv);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+
+    private static void assertBinaryFails(byte[] bytes, String message) {
+        try {
+            SeriesImporter.readBinary(
+                    Channels.newChannel(new ByteArrayInputStream(bytes)),
+                    new ConcurrentPointsProviderTest.TestProvider(10)
+            );
+            fail("No error for " + bytes.length + " bytes");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import java.util.List;
+import java.util.Observer;
+
+/**
+ * Compressed series of points (x, x % 100) for x = 0, 1, ...; observers are not notified
+ */
+class SeriesPointsProvider implements CompressedPointsProvider {
+
+    private final CompressedSeries series = new CompressedSeries();
+
+    SeriesPointsProvider(int size) {
+        append(size);
+    }
+
+    /**
+     * Append points to the end of the series
+     */
+    void append(int count) {
+        for (int i = 0; i < count; i++) {
+            long x = series.size();
+            series.append(x, x % 100);
+        }
+    }
+
+    @Override
+    public CompressedSeries getSeries() {
+        return series;
+    }
+
+    @Override
+    public List<Point> getPoints() {
+        return series.asList();
+    }
+
+    @Override
+    public String getLabelX(double x) {
+        return String.valueOf((long) x);
+    }
+
+    @Override
+    public String getLabelY(double y) {
+        return String.valueOf(y);
+    }
+
+    @Override
+    public double getScaleStepX() {
+        return Math.max(1, series.size() / 10);
+    }
+
+    @Override
+    public double getScaleStepY() {
+        return 10;
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.anastasia.zaitsewa.graphview;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+import java.util.Observer;
+import java.util.Random;
+
+/**
+ * Deterministic random-walk series for benchmarking, X-sorted with step 1
+ */
+class SyntheticPointsProvider implements PointsProvider {
+
+    private final Observable observable = new PointsObservable();
+    private final List<Point> points;
+    private final Random random;
+    private final double scaleStepX;
+    private double lastY;
+
+    SyntheticPointsProvider(int size, long seed) {
+        points = new ArrayList<>(size);
+        random = new Random(seed);
+        scaleStepX = Math.max(1, size / 10);
+        lastY = 100;
+        for (int i = 0; i < size; i++) {
+            nextPoint();
+        }
+    }
+
+    /**
+     * Append points to the end of the series and notify observers
+     */
+    void append(int count) {
+        for (int i = 0; i < count; i++) {
+            nextPoint();
+        }
+        observable.notifyObservers();
+    }
+
+    private void nextPoint() {
+        lastY = Math.max(0, lastY + random.nextGaussian());
+        points.add(new Point(points.size(), lastY));
+    }
+
+    @Override
+    public List<Point> getPoints() {
+        return points;
+    }
+
+    @Override
+    public String getLabelX(double x) {
+        return String.valueOf((long) x);
+    }
+
+    @Override
+    public String getLabelY(double y) {
+        return String.format("%.1f", y);
+    }
+
+    @Override
+    public double getScaleStepX() {
+        return scaleStepX;
+    }
+
+    @Override
+    public double getScaleStepY() {
+        return 10;
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+        observable.addObserver(observer);
+    }
+
+    private class PointsObservable extends Observable {
+
+        @Override
+        public void notifyObservers() {
+            setChanged();
+            super.notifyObservers();
+        }
+    }
+}